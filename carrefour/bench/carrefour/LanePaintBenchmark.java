@@ -0,0 +1,146 @@
+package carrefour;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Time to paint one lane into an off-screen image, by vehicle count and
+ * {@link VehicleLanePanel.RenderMode}, plus the bare per-sprite draw cost.
+ * Runs headless, so no window or display is needed.
+ * 
+ * @author PC-DELL
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(jvmArgsAppend = "-Djava.awt.headless=true")
+public class LanePaintBenchmark {
+    private static final int LANE_LENGTH = 900;
+    private static final int LANE_WIDTH = 100;
+    
+    /**
+     * Sprites spread along a lane, and the image they are drawn into.
+     */
+    @State(Scope.Thread)
+    public static class SpriteState {
+        @Param({"1", "16", "64", "256"})
+        public int vehicleCount;
+        
+        VehicleTable vehicleTable;
+        VehicleSprite[] sprites;
+        int[] tableRows;
+        BufferedImage target;
+        Graphics2D graphics;
+        
+        @Setup
+        public void setUp() {
+            vehicleTable = new VehicleTable();
+            sprites = new VehicleSprite[vehicleCount];
+            tableRows = new int[vehicleCount];
+            for (int i = 0; i < vehicleCount; i++) {
+                // Spread the vehicles along the lane, overlapping when crowded
+                int position = i * (LANE_LENGTH - VerticalVehicle.VEHICLE_HEIGHT) / vehicleCount;
+                tableRows[i] = vehicleTable.allocate(VehicleTable.LANE_VERTICAL, position, position, 0f, 0L);
+                sprites[i] = new TaxiSprite(VerticalVehicle.INITIAL_X, position,
+                                            VerticalVehicle.VEHICLE_WIDTH, VerticalVehicle.VEHICLE_HEIGHT);
+            }
+            target = new BufferedImage(LANE_WIDTH, LANE_LENGTH, BufferedImage.TYPE_INT_ARGB);
+            graphics = target.createGraphics();
+        }
+        
+        @TearDown
+        public void tearDown() {
+            graphics.dispose();
+        }
+    }
+    
+    /**
+     * The same sprites attached to a lane panel in a given render mode.
+     */
+    @State(Scope.Thread)
+    public static class LaneState {
+        @Param({"COMPONENTS", "BATCHED"})
+        public VehicleLanePanel.RenderMode renderMode;
+        
+        VehicleLanePanel lanePanel;
+        
+        @Setup
+        public void setUp(SpriteState sprites) {
+            lanePanel = new VehicleLanePanel(true, renderMode);
+            lanePanel.setSize(LANE_WIDTH, LANE_LENGTH);
+            for (int i = 0; i < sprites.sprites.length; i++) {
+                lanePanel.addVehicle(new ParkedVehicle(sprites.sprites[i], sprites.tableRows[i]));
+            }
+        }
+    }
+    
+    /**
+     * One animation frame: positions synced from the table, then a full
+     * repaint of the lane.
+     */
+    @Benchmark
+    public BufferedImage syncAndPaint(SpriteState sprites, LaneState lane) {
+        lane.lanePanel.syncPositions(sprites.vehicleTable);
+        lane.lanePanel.paint(sprites.graphics);
+        return sprites.target;
+    }
+    
+    /**
+     * Draws the sprite images directly, without any Swing component.
+     */
+    @Benchmark
+    public BufferedImage spritesOnly(SpriteState state) {
+        VehicleSprite[] sprites = state.sprites;
+        for (int i = 0; i < sprites.length; i++) {
+            sprites[i].paintAt(state.graphics, sprites[i].getX(), sprites[i].getY());
+        }
+        return state.target;
+    }
+    
+    /**
+     * Vehicle that stays at its table position, so the benchmark paints a
+     * fixed scene.
+     */
+    private static final class ParkedVehicle implements Vehicle {
+        private final VehicleSprite sprite;
+        private final int tableRow;
+        
+        ParkedVehicle(VehicleSprite sprite, int tableRow) {
+            this.sprite = sprite;
+            this.tableRow = tableRow;
+        }
+        
+        @Override
+        public VehicleSprite getSprite() {
+            return sprite;
+        }
+        
+        @Override
+        public boolean isFinished() {
+            return false;
+        }
+        
+        @Override
+        public int getTableRow() {
+            return tableRow;
+        }
+        
+        @Override
+        public void reset() {
+        }
+        
+        @Override
+        public void run() {
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package carrefour;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of a P/V pair around a short critical section, with 1 to 256
+ * threads contending for the same semaphore. The {@code implementation}
+ * parameter compares {@link Semaphore} against
+ * {@link java.util.concurrent.Semaphore} under identical load.
+ * 
+ * @author PC-DELL
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class SemaphoreBenchmark {
+    private static final int CRITICAL_SECTION_TOKENS = 16;
+    
+    @Param({"carrefour", "juc"})
+    public String implementation;
+    
+    @Param({"1", "4"})
+    public int permits;
+    
+    private boolean useCarrefour;
+    private Semaphore semaphore;
+    private java.util.concurrent.Semaphore jucSemaphore;
+    
+    @Setup
+    public void setUp() {
+        useCarrefour = "carrefour".equals(implementation);
+        semaphore = new Semaphore(permits, "bench");
+        jucSemaphore = new java.util.concurrent.Semaphore(permits, true);
+    }
+    
+    /**
+     * Acquires a permit, burns a fixed amount of CPU and releases it.
+     */
+    private void acquireRelease() {
+        if (useCarrefour) {
+            semaphore.P();
+            Blackhole.consumeCPU(CRITICAL_SECTION_TOKENS);
+            semaphore.V();
+        } else {
+            jucSemaphore.acquireUninterruptibly();
+            Blackhole.consumeCPU(CRITICAL_SECTION_TOKENS);
+            jucSemaphore.release();
+        }
+    }
+    
+    @Benchmark
+    @Threads(1)
+    public void threads001() {
+        acquireRelease();
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public void threads004() {
+        acquireRelease();
+    }
+    
+    @Benchmark
+    @Threads(16)
+    public void threads016() {
+        acquireRelease();
+    }
+    
+    @Benchmark
+    @Threads(64)
+    public void threads064() {
+        acquireRelease();
+    }
+    
+    @Benchmark
+    @Threads(256)
+    public void threads256() {
+        acquireRelease();
+    }
+}
@@ -0,0 +1,196 @@
+package carrefour;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Cost of the {@link StatisticsTracker} paths used by vehicle threads
+ * (recording a crossing) and by readers (the statistics panel, metrics
+ * exporters). The {@code atomicBaseline} benchmarks do the same work as
+ * {@code verticalVehicleCrossed} the way the tracker did it before striping,
+ * as a reference: one AtomicInteger increment, one AtomicInteger decrement
+ * and one AtomicLong add, a histogram record on shared bucket, count, sum
+ * and max counters, a clock read and a CAS on the current slot of the
+ * crossing series. Writers are measured from 1 to 128 threads, since
+ * contention on the shared counters only shows with many vehicle threads.
+ * 
+ * @author PC-DELL
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class StatisticsTrackerBenchmark {
+    private static final long WAIT_TIME_MS = 1200;
+    private static final long WINDOW_MS = 10_000;
+    private static final int HISTOGRAM_BUCKETS = 32 * 59; // As in WaitTimeHistogram
+    private static final long CROSSING_BUCKET_MS = 1000;
+    private static final int CROSSING_BUCKETS = 300;
+    private static final int VALUE_BITS = 40; // Slot layout of RollingTimeSeries
+    
+    private StatisticsTracker tracker;
+    private AtomicCounters atomicCounters;
+    
+    /**
+     * The updates of verticalVehicleCrossed as they were before striping.
+     */
+    static final class AtomicCounters {
+        private final AtomicInteger verticalVehiclesCrossed = new AtomicInteger(0);
+        private final AtomicInteger verticalVehiclesWaiting = new AtomicInteger(0);
+        private final AtomicLong totalVerticalWaitTime = new AtomicLong(0);
+        private final AtomicLongArray histogramCounts = new AtomicLongArray(HISTOGRAM_BUCKETS);
+        private final AtomicLong histogramCount = new AtomicLong();
+        private final AtomicLong histogramSum = new AtomicLong();
+        private final AtomicLong histogramMax = new AtomicLong();
+        private final AtomicLongArray crossingSlots = new AtomicLongArray(CROSSING_BUCKETS);
+        
+        void verticalVehicleCrossed(long waitTimeMs) {
+            verticalVehiclesCrossed.incrementAndGet();
+            verticalVehiclesWaiting.decrementAndGet();
+            totalVerticalWaitTime.addAndGet(waitTimeMs);
+            
+            histogramCounts.incrementAndGet(bucketIndex(waitTimeMs));
+            histogramCount.incrementAndGet();
+            histogramSum.addAndGet(waitTimeMs);
+            long seen;
+            while (waitTimeMs > (seen = histogramMax.get()) && !histogramMax.compareAndSet(seen, waitTimeMs)) {
+                // Retry against the concurrent update
+            }
+            
+            long epoch = System.currentTimeMillis() / CROSSING_BUCKET_MS;
+            int index = (int) (epoch % CROSSING_BUCKETS);
+            long tag = epoch & ((1L << (63 - VALUE_BITS)) - 1);
+            while (true) {
+                long slot = crossingSlots.get(index);
+                long value = (slot >>> VALUE_BITS) == tag ? slot & ((1L << VALUE_BITS) - 1) : 0;
+                if (crossingSlots.compareAndSet(index, slot, (tag << VALUE_BITS) | (value + 1))) {
+                    break;
+                }
+            }
+        }
+        
+        /**
+         * Log-linear bucket of a value, as in WaitTimeHistogram.
+         */
+        private static int bucketIndex(long value) {
+            if (value < 32) {
+                return (int) value;
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(value) - 5;
+            return 32 * (shift + 1) + ((int) (value >>> shift) & 31);
+        }
+    }
+    
+    @Setup
+    public void setUp() {
+        tracker = new StatisticsTracker();
+        atomicCounters = new AtomicCounters();
+        for (int i = 0; i < 10_000; i++) {
+            tracker.verticalVehicleStarted();
+            tracker.verticalVehicleCrossed(WAIT_TIME_MS + i % 500);
+            atomicCounters.verticalVehicleCrossed(WAIT_TIME_MS + i % 500);
+        }
+    }
+    
+    @Benchmark
+    @Threads(1)
+    public void crossedSingleThread() {
+        tracker.verticalVehicleCrossed(WAIT_TIME_MS);
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public void crossedFourThreads() {
+        tracker.verticalVehicleCrossed(WAIT_TIME_MS);
+    }
+    
+    @Benchmark
+    @Threads(64)
+    public void crossed64Threads() {
+        tracker.verticalVehicleCrossed(WAIT_TIME_MS);
+    }
+    
+    @Benchmark
+    @Threads(128)
+    public void crossed128Threads() {
+        tracker.verticalVehicleCrossed(WAIT_TIME_MS);
+    }
+    
+    @Benchmark
+    @Threads(1)
+    public void atomicBaselineSingleThread() {
+        atomicCounters.verticalVehicleCrossed(WAIT_TIME_MS);
+    }
+    
+    @Benchmark
+    @Threads(4)
+    public void atomicBaselineFourThreads() {
+        atomicCounters.verticalVehicleCrossed(WAIT_TIME_MS);
+    }
+    
+    @Benchmark
+    @Threads(64)
+    public void atomicBaseline64Threads() {
+        atomicCounters.verticalVehicleCrossed(WAIT_TIME_MS);
+    }
+    
+    @Benchmark
+    @Threads(128)
+    public void atomicBaseline128Threads() {
+        atomicCounters.verticalVehicleCrossed(WAIT_TIME_MS);
+    }
+    
+    @Benchmark
+    public StatisticsSnapshot snapshot() {
+        return tracker.snapshot();
+    }
+    
+    @Benchmark
+    public double crossingsPerSecond() {
+        return tracker.getCrossingsPerSecond(WINDOW_MS);
+    }
+    
+    @Benchmark
+    public long waitTimeP99() {
+        return tracker.getVerticalWaitTimeHistogram().getP99();
+    }
+    
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public void mixedWriter() {
+        tracker.verticalVehicleCrossed(WAIT_TIME_MS);
+    }
+    
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public StatisticsSnapshot mixedReader() {
+        return tracker.snapshot();
+    }
+    
+    @Benchmark
+    @Group("mixed64")
+    @GroupThreads(64)
+    public void mixed64Writer() {
+        tracker.verticalVehicleCrossed(WAIT_TIME_MS);
+    }
+    
+    @Benchmark
+    @Group("mixed64")
+    @GroupThreads(1)
+    public StatisticsSnapshot mixed64Reader() {
+        return tracker.snapshot();
+    }
+}
@@ -0,0 +1,4 @@
+package carrefour.jmh_generated;
+public class LanePaintBenchmark_LaneState_jmhType extends LanePaintBenchmark_LaneState_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package carrefour.jmh_generated;
+public class LanePaintBenchmark_SpriteState_jmhType extends LanePaintBenchmark_SpriteState_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package carrefour.jmh_generated;
+public class LanePaintBenchmark_jmhType extends LanePaintBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package carrefour.jmh_generated;
+public class SemaphoreBenchmark_jmhType extends SemaphoreBenchmark_jmhType_B3 {
+}
+
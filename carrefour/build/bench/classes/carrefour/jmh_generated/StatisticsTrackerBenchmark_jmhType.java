@@ -0,0 +1,4 @@
+package carrefour.jmh_generated;
+public class StatisticsTrackerBenchmark_jmhType extends StatisticsTrackerBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,222 @@
+package carrefour;
+
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.awt.image.VolatileImage;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Heavyweight canvas that draws the intersection from its own render thread.
+ * 
+ * <p>The static scene (roads, lane lines and light images) is rendered once
+ * into a {@link VolatileImage} and only redrawn if the image is lost. Each
+ * frame copies that background into a {@link BufferStrategy} back buffer,
+ * draws the light indicators and the vehicles of the latest
+ * {@link FrameSnapshot} on top, and flips. Snapshots arrive through the
+ * controller's {@link TripleBuffer}, so the render thread never touches live
+ * simulation state and never blocks the simulation. The loop is
+ * capped at a target frame rate and measures how long each frame takes to
+ * render; the figures are shown in a corner of the canvas and exposed through
+ * getters.
+ * 
+ * @author PC-DELL
+ */
+public class ActiveRenderCanvas extends Canvas implements Runnable {
+    private static final Logger LOGGER = Logger.getLogger(ActiveRenderCanvas.class.getName());
+    private static final int BUFFER_COUNT = 2;
+    private static final double FRAME_TIME_SMOOTHING = 0.05;
+    
+    private final TrafficController trafficController;
+    private final TripleBuffer<FrameSnapshot> frameBuffer;
+    private final long framePeriodNanos;
+    
+    private volatile Thread renderThread;
+    private volatile boolean running;
+    private VolatileImage background;
+    
+    private volatile long lastFrameTimeNanos;
+    private volatile double averageFrameTimeNanos;
+    private volatile long frameCount;
+    
+    /**
+     * Creates a canvas that renders the given controller's scene.
+     * 
+     * @param trafficController the controller providing the scene
+     * @param targetFps the maximum number of frames per second (must be > 0)
+     * @throws IllegalArgumentException if targetFps is not positive
+     */
+    public ActiveRenderCanvas(TrafficController trafficController, int targetFps) {
+        if (targetFps <= 0) {
+            throw new IllegalArgumentException("Target frame rate must be positive");
+        }
+        this.trafficController = trafficController;
+        this.frameBuffer = trafficController.getFrameBuffer();
+        this.framePeriodNanos = 1_000_000_000L / targetFps;
+        setIgnoreRepaint(true);
+    }
+    
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        createBufferStrategy(BUFFER_COUNT);
+        running = true;
+        renderThread = new Thread(this, "ActiveRenderLoop");
+        renderThread.setDaemon(true);
+        renderThread.start();
+    }
+    
+    @Override
+    public void removeNotify() {
+        running = false;
+        Thread thread = renderThread;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(1000);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        super.removeNotify();
+    }
+    
+    @Override
+    public void run() {
+        long nextFrame = System.nanoTime();
+        while (running && !Thread.currentThread().isInterrupted()) {
+            long start = System.nanoTime();
+            try {
+                renderFrame();
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Frame rendering failed", ex);
+            }
+            recordFrameTime(System.nanoTime() - start);
+            
+            // Cap the frame rate; skip ahead instead of bursting if we fell behind
+            nextFrame += framePeriodNanos;
+            long now = System.nanoTime();
+            if (nextFrame > now) {
+                LockSupport.parkNanos(nextFrame - now);
+            } else {
+                nextFrame = now;
+            }
+        }
+    }
+    
+    /**
+     * Renders and shows one frame, retrying if the buffers were lost.
+     */
+    private void renderFrame() {
+        BufferStrategy strategy = getBufferStrategy();
+        if (strategy == null || getWidth() <= 0 || getHeight() <= 0) {
+            return;
+        }
+        FrameSnapshot frame = frameBuffer.getLatest();
+        do {
+            do {
+                Graphics g = strategy.getDrawGraphics();
+                try {
+                    drawBackground(g);
+                    trafficController.paintLightIndicators(g, frame.getLightState());
+                    trafficController.paintVehicles(g, frame);
+                    drawFrameTime(g);
+                } finally {
+                    g.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+    }
+    
+    /**
+     * Copies the cached static scene, re-rendering it only when needed.
+     */
+    private void drawBackground(Graphics g) {
+        GraphicsConfiguration configuration = getGraphicsConfiguration();
+        int status = background == null
+            ? VolatileImage.IMAGE_INCOMPATIBLE
+            : background.validate(configuration);
+        if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+            background = createVolatileImage(getWidth(), getHeight());
+            status = VolatileImage.IMAGE_RESTORED;
+        }
+        if (status == VolatileImage.IMAGE_RESTORED) {
+            renderBackground();
+        }
+        g.drawImage(background, 0, 0, null);
+        if (background.contentsLost()) {
+            // Lost while copying; the next frame renders it again
+            background = null;
+        }
+    }
+    
+    /**
+     * Renders the static scene into the background image.
+     */
+    private void renderBackground() {
+        Graphics2D g2d = background.createGraphics();
+        try {
+            g2d.setColor(getBackground() != null ? getBackground() : Color.LIGHT_GRAY);
+            g2d.fillRect(0, 0, getWidth(), getHeight());
+            trafficController.paintIntersection(g2d);
+        } finally {
+            g2d.dispose();
+        }
+    }
+    
+    /**
+     * Draws the frame time statistics in the top-left corner.
+     */
+    private void drawFrameTime(Graphics g) {
+        g.setColor(Color.BLACK);
+        g.drawString(String.format("frame %.2f ms (avg %.2f ms)",
+                                   lastFrameTimeNanos / 1e6, averageFrameTimeNanos / 1e6), 10, 20);
+    }
+    
+    /**
+     * Updates the last and smoothed frame times.
+     */
+    private void recordFrameTime(long nanos) {
+        lastFrameTimeNanos = nanos;
+        double average = averageFrameTimeNanos;
+        averageFrameTimeNanos = frameCount == 0
+            ? nanos
+            : average + FRAME_TIME_SMOOTHING * (nanos - average);
+        frameCount++;
+    }
+    
+    /**
+     * Gets the render time of the most recent frame.
+     * 
+     * @return the frame time in nanoseconds
+     */
+    public long getLastFrameTimeNanos() {
+        return lastFrameTimeNanos;
+    }
+    
+    /**
+     * Gets the exponentially smoothed render time per frame.
+     * 
+     * @return the average frame time in milliseconds
+     */
+    public double getAverageFrameTimeMillis() {
+        return averageFrameTimeNanos / 1e6;
+    }
+    
+    /**
+     * Gets the number of frames rendered so far.
+     * 
+     * @return the frame count
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+}
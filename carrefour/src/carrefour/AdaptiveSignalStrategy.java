@@ -0,0 +1,106 @@
+package carrefour;
+
+/**
+ * Queue-actuated strategy. A green lasts at least the minimum green, then:
+ * 
+ * <ul>
+ * <li>it rests while nobody waits on the red approach;</li>
+ * <li>it ends once the green approach has been empty for the gap time
+ *     (gap-out), so an empty approach does not hold the intersection;</li>
+ * <li>it ends at the maximum green even if its queue is not empty
+ *     (max-out), so the red approach is never starved.</li>
+ * </ul>
+ * 
+ * @author PC-DELL
+ */
+public class AdaptiveSignalStrategy implements SignalControlStrategy {
+    static final long DEFAULT_MIN_GREEN_MS = 1000;
+    static final long DEFAULT_MAX_GREEN_MS = 4000;
+    static final long DEFAULT_GAP_MS = 300;
+    private static final long DECISION_INTERVAL_MS = 100; // One crossing time
+    
+    private final long minGreenMs;
+    private final long maxGreenMs;
+    private final long gapMs;
+    
+    private long lastDemandMs; // Green time at which the green approach last had a vehicle
+    private long gapOutCount;
+    private long maxOutCount;
+    
+    /**
+     * Creates an adaptive strategy.
+     * 
+     * @param minGreenMs shortest green, in milliseconds
+     * @param maxGreenMs longest green while the other approach waits, in milliseconds
+     * @param gapMs how long the green approach must stay empty before the green ends
+     * @throws IllegalArgumentException if the bounds are inconsistent
+     */
+    public AdaptiveSignalStrategy(long minGreenMs, long maxGreenMs, long gapMs) {
+        if (minGreenMs <= 0 || maxGreenMs < minGreenMs) {
+            throw new IllegalArgumentException("Need 0 < minimum green <= maximum green");
+        }
+        if (gapMs < 0) {
+            throw new IllegalArgumentException("Gap must be non-negative");
+        }
+        this.minGreenMs = minGreenMs;
+        this.maxGreenMs = maxGreenMs;
+        this.gapMs = gapMs;
+    }
+    
+    @Override
+    public long getDecisionIntervalMs() {
+        return DECISION_INTERVAL_MS;
+    }
+    
+    @Override
+    public long getMaxGreenMs() {
+        return maxGreenMs;
+    }
+    
+    @Override
+    public void phaseStarted(int lightState) {
+        lastDemandMs = 0;
+    }
+    
+    @Override
+    public boolean shouldSwitch(int lightState, long greenElapsedMs, int greenQueue, int redQueue) {
+        if (greenQueue > 0) {
+            lastDemandMs = greenElapsedMs;
+        }
+        if (greenElapsedMs < minGreenMs || redQueue == 0) {
+            return false;
+        }
+        if (greenElapsedMs >= maxGreenMs) {
+            maxOutCount++;
+            return true;
+        }
+        if (greenElapsedMs - lastDemandMs >= gapMs) {
+            gapOutCount++;
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Gets the number of greens ended because their approach emptied.
+     * 
+     * @return the gap-out count
+     */
+    public long getGapOutCount() {
+        return gapOutCount;
+    }
+    
+    /**
+     * Gets the number of greens ended by the maximum green.
+     * 
+     * @return the max-out count
+     */
+    public long getMaxOutCount() {
+        return maxOutCount;
+    }
+    
+    @Override
+    public String toString() {
+        return "adaptive min " + minGreenMs + " ms, max " + maxGreenMs + " ms, gap " + gapMs + " ms";
+    }
+}
@@ -0,0 +1,266 @@
+package carrefour;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Produces the arrival times of one approach from a {@link DemandProfile}.
+ * 
+ * <p>In POISSON mode arrivals form a non-homogeneous Poisson process, drawn
+ * by thinning: candidate gaps are exponential at the profile's maximum rate,
+ * and a candidate at time t is kept with probability rate(t) / maxRate. In
+ * DETERMINISTIC mode arrivals are evenly spaced at the current rate, which
+ * reproduces the fixed spawn interval of earlier versions.
+ * 
+ * <p>The generator is lazy: {@link #nextArrivalTimeMs} computes one arrival
+ * at a time, so a simulation clock can pull arrivals as it goes, and
+ * {@link #start} schedules one task per arrival on a
+ * {@link ScheduledExecutorService}. Either way nothing is created for
+ * demand that has not arrived yet.
+ * 
+ * @author PC-DELL
+ */
+public class ArrivalGenerator {
+    /** Returned by nextArrivalTimeMs when no more vehicles will arrive. */
+    public static final long NO_ARRIVAL = Long.MAX_VALUE;
+    
+    private static final String PROFILE_PROPERTY_PREFIX = "carrefour.arrivals.";
+    private static final String PROCESS_PROPERTY = "carrefour.arrivals.process";
+    private static final String LIMIT_PROPERTY = "carrefour.arrivals.limit";
+    private static final String SEED_PROPERTY = "carrefour.arrivals.seed";
+    private static final Logger LOGGER = Logger.getLogger(ArrivalGenerator.class.getName());
+    
+    /**
+     * How arrivals are spread in time.
+     */
+    public enum ArrivalProcess {
+        POISSON,
+        DETERMINISTIC
+    }
+    
+    private final DemandProfile profile;
+    private final ArrivalProcess process;
+    private final long maxArrivals;
+    private final Random random;
+    
+    private double clockMs; // Time of the last arrival, unrounded
+    private volatile long arrivals; // Written by one thread at a time
+    private volatile ScheduledFuture<?> pending;
+    private volatile boolean stopped;
+    
+    /**
+     * Creates a new arrival generator.
+     * 
+     * @param profile the arrival rate over time
+     * @param process how arrivals are spread in time
+     * @param maxArrivals number of arrivals after which the generator stops, 0 for no limit
+     * @param seed seed of the random source, for reproducible runs
+     * @throws IllegalArgumentException if maxArrivals is negative
+     */
+    public ArrivalGenerator(DemandProfile profile, ArrivalProcess process, long maxArrivals, long seed) {
+        if (maxArrivals < 0) {
+            throw new IllegalArgumentException("Arrival limit must be non-negative");
+        }
+        this.profile = profile;
+        this.process = process;
+        this.maxArrivals = maxArrivals;
+        this.random = new Random(seed);
+    }
+    
+    /**
+     * Creates a generator for one approach from system properties:
+     * {@code carrefour.arrivals.<approach>} holds the demand profile (see
+     * {@link DemandProfile#parse}), {@code carrefour.arrivals.process} is
+     * {@code poisson} or {@code deterministic}, {@code carrefour.arrivals.limit}
+     * caps the number of arrivals and {@code carrefour.arrivals.seed} fixes
+     * the random source.
+     * 
+     * @param approach the approach name, e.g. "vertical"
+     * @param defaultProfile profile used when the property is not set
+     * @param defaultProcess process used when the property is not set
+     * @param defaultLimit arrival limit used when the property is not set, 0 for no limit
+     * @return the generator
+     * @throws IllegalArgumentException if a property is malformed
+     */
+    public static ArrivalGenerator fromSystemProperties(String approach, DemandProfile defaultProfile,
+                                                        ArrivalProcess defaultProcess, long defaultLimit) {
+        String profileSpec = System.getProperty(PROFILE_PROPERTY_PREFIX + approach);
+        DemandProfile profile = profileSpec != null ? DemandProfile.parse(profileSpec) : defaultProfile;
+        String processName = System.getProperty(PROCESS_PROPERTY);
+        ArrivalProcess process = processName != null
+            ? ArrivalProcess.valueOf(processName.trim().toUpperCase(Locale.ROOT))
+            : defaultProcess;
+        long limit = Long.getLong(LIMIT_PROPERTY, defaultLimit);
+        // Each approach gets its own stream, so they are independent but reproducible
+        long seed = Long.getLong(SEED_PROPERTY, System.nanoTime()) ^ approach.hashCode();
+        return new ArrivalGenerator(profile, process, limit, seed);
+    }
+    
+    /**
+     * Creates a single daemon thread scheduler for arrival tasks. Generators
+     * sharing it never run their tasks concurrently.
+     * 
+     * @return the scheduler
+     */
+    public static ScheduledExecutorService newArrivalScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "ArrivalScheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Computes the next arrival. Not thread-safe: call it from one thread,
+     * or only through {@link #start}.
+     * 
+     * @return the arrival time in milliseconds since the generator started,
+     *         or NO_ARRIVAL if the limit is reached or demand has ended
+     */
+    public long nextArrivalTimeMs() {
+        if (maxArrivals > 0 && arrivals >= maxArrivals) {
+            return NO_ARRIVAL;
+        }
+        double time = process == ArrivalProcess.POISSON ? nextPoisson(clockMs) : nextDeterministic(clockMs);
+        if (time >= NO_ARRIVAL) {
+            return NO_ARRIVAL;
+        }
+        clockMs = time;
+        arrivals++;
+        return Math.round(time);
+    }
+    
+    /**
+     * Draws the next arrival of a non-homogeneous Poisson process by
+     * thinning.
+     */
+    private double nextPoisson(double fromMs) {
+        double maxRate = profile.getMaxRate();
+        if (maxRate <= 0) {
+            return NO_ARRIVAL;
+        }
+        double time = fromMs;
+        while (true) {
+            if (profile.getRate((long) time) <= 0) {
+                // No candidate can be accepted before the next segment, and the process is memoryless
+                long change = profile.getNextChange((long) time);
+                if (change == Long.MAX_VALUE) {
+                    return NO_ARRIVAL;
+                }
+                time = change;
+            }
+            // Exponential gap at the maximum rate; 1 - nextDouble() is never 0
+            time += -Math.log(1 - random.nextDouble()) * 1000 / maxRate;
+            if (time >= NO_ARRIVAL) {
+                return NO_ARRIVAL;
+            }
+            if (random.nextDouble() * maxRate < profile.getRate((long) time)) {
+                return time;
+            }
+        }
+    }
+    
+    /**
+     * Steps to the next evenly spaced arrival at the current rate, skipping
+     * segments without demand.
+     */
+    private double nextDeterministic(double fromMs) {
+        if (profile.getMaxRate() <= 0) {
+            return NO_ARRIVAL;
+        }
+        double time = fromMs;
+        if (arrivals > 0) {
+            time += 1000 / profile.getRate((long) time);
+        }
+        while (profile.getRate((long) time) <= 0) {
+            // Demand resumes with an arrival at the start of the next busy segment
+            long change = profile.getNextChange((long) time);
+            if (change == Long.MAX_VALUE) {
+                return NO_ARRIVAL;
+            }
+            time = change;
+        }
+        return time;
+    }
+    
+    /**
+     * Runs a task at every arrival, on the given scheduler, until the
+     * generator is stopped or demand ends. Arrival times are measured from
+     * this call; a late task does not shift the following arrivals.
+     * 
+     * @param scheduler the scheduler running the arrival tasks
+     * @param onArrival the task run at each arrival
+     */
+    public void start(ScheduledExecutorService scheduler, Runnable onArrival) {
+        long startNanos = System.nanoTime();
+        scheduleNext(scheduler, onArrival, startNanos);
+    }
+    
+    /**
+     * Schedules the task for the next arrival, which then schedules the one
+     * after.
+     */
+    private void scheduleNext(ScheduledExecutorService scheduler, Runnable onArrival, long startNanos) {
+        long arrivalMs = nextArrivalTimeMs();
+        if (stopped || arrivalMs == NO_ARRIVAL) {
+            return;
+        }
+        long delayNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(arrivalMs) - System.nanoTime();
+        pending = scheduler.schedule(() -> {
+            if (stopped) {
+                return;
+            }
+            try {
+                onArrival.run();
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Arrival task failed", ex);
+            }
+            scheduleNext(scheduler, onArrival, startNanos);
+        }, Math.max(0, delayNanos), TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Stops scheduling arrivals. A task already running completes.
+     */
+    public void stop() {
+        stopped = true;
+        ScheduledFuture<?> next = pending;
+        if (next != null) {
+            next.cancel(false);
+        }
+    }
+    
+    /**
+     * Gets the number of arrival times generated so far. Once started, this
+     * includes the arrival that is scheduled but has not happened yet.
+     * 
+     * @return the generated arrival count
+     */
+    public long getArrivalCount() {
+        return arrivals;
+    }
+    
+    /**
+     * Gets the demand profile.
+     * 
+     * @return the profile
+     */
+    public DemandProfile getProfile() {
+        return profile;
+    }
+    
+    /**
+     * Gets the arrival process.
+     * 
+     * @return the process
+     */
+    public ArrivalProcess getProcess() {
+        return process;
+    }
+}
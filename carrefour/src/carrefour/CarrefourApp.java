@@ -1,5 +1,8 @@
 package carrefour;
 
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Main application class for the Carrefour traffic intersection simulation.
  * This application demonstrates multi-threaded programming concepts using
@@ -8,8 +11,8 @@ package carrefour;
  * @author PC-DELL
  */
 public class CarrefourApp {
-    private static final int VEHICLE_COUNT = 100;
-    private static final int VEHICLE_SPAWN_DELAY_MS = 600;
+    private static final int VEHICLE_COUNT = 100; // Per direction, unless carrefour.arrivals.limit is set
+    private static final double DEFAULT_ARRIVAL_RATE = 1000.0 / 600; // One vehicle per 600 ms
     
     /**
      * Main entry point of the application.
@@ -27,9 +30,12 @@ public class CarrefourApp {
             // Create statistics tracker
             StatisticsTracker statisticsTracker = new StatisticsTracker();
             
+            // Lights and vehicles must agree on platoon admission, enabled by -Dcarrefour.admission
+            PlatoonAdmission platoonAdmission = PlatoonAdmission.fromSystemProperties();
+            
             // Create and start traffic light controller
             TrafficController trafficController = new TrafficController(
-                trafficLight1, trafficLight2, lane2, lane1);
+                trafficLight1, trafficLight2, lane2, lane1, statisticsTracker, platoonAdmission);
             Thread trafficControllerThread = new Thread(trafficController);
             trafficControllerThread.setDaemon(true);
             trafficControllerThread.start();
@@ -38,9 +44,24 @@ public class CarrefourApp {
             CarrefourFrame frame = new CarrefourFrame(
                 trafficLight1, trafficLight2, lane2, lane1, trafficController, statisticsTracker);
             
-            // Create vehicle threads
-            createVehicles(lane1, trafficLight1, lane2, trafficLight2, 
-                         trafficController, statisticsTracker);
+            // Finished vehicles are retired by the controller and reused by the spawner
+            VehiclePool vehiclePool = new VehiclePool(lane1, trafficLight1, lane2, trafficLight2,
+                                                      trafficController, statisticsTracker, platoonAdmission);
+            trafficController.setVehiclePool(vehiclePool);
+            
+            // Optional Prometheus endpoint, enabled by -Dcarrefour.metrics.port
+            MetricsHttpServer.startFromSystemProperties(statisticsTracker,
+                trafficController::getCurrentLightState, lane1, lane2, trafficLight1, trafficLight2);
+            
+            // Optional shared-memory metrics file, enabled by -Dcarrefour.metrics.file
+            MappedMetricsFile.startFromSystemProperties(statisticsTracker,
+                                                        trafficController::getCurrentLightState);
+            
+            // Vehicles are created as they arrive, on one generator per approach
+            VehicleLauncher vehicleLauncher = VehicleLauncher.fromSystemProperties();
+            ScheduledExecutorService arrivalScheduler = ArrivalGenerator.newArrivalScheduler();
+            startArrivals("vertical", true, arrivalScheduler, vehiclePool, trafficController, vehicleLauncher);
+            startArrivals("horizontal", false, arrivalScheduler, vehiclePool, trafficController, vehicleLauncher);
             
         } catch (Exception e) {
             System.err.println("Error starting application: " + e.getMessage());
@@ -49,52 +70,33 @@ public class CarrefourApp {
     }
     
     /**
-     * Creates and starts vehicle threads for both lanes.
+     * Starts the arrival generator of one approach. Each arrival takes a
+     * vehicle from the pool, registers it and launches it. Demand defaults to
+     * one vehicle every 600 ms, 100 per direction, and is configured with the
+     * {@code carrefour.arrivals.*} system properties.
      * 
-     * @param lane1 semaphore for lane 1
-     * @param trafficLight1 semaphore for traffic light 1
-     * @param lane2 semaphore for lane 2
-     * @param trafficLight2 semaphore for traffic light 2
+     * @param approach the approach name used in the system properties
+     * @param isVertical true for the vertical lane, false for the horizontal one
+     * @param scheduler the scheduler running the arrivals
+     * @param vehiclePool the pool providing new or recycled vehicles
      * @param trafficController the traffic controller for vehicle registration
-     * @param statisticsTracker the statistics tracker for recording metrics
+     * @param vehicleLauncher the launcher that decides which thread runs each vehicle
      */
-    private static void createVehicles(Semaphore lane1, Semaphore trafficLight1,
-                                      Semaphore lane2, Semaphore trafficLight2,
+    private static void startArrivals(String approach, boolean isVertical,
+                                      ScheduledExecutorService scheduler,
+                                      VehiclePool vehiclePool,
                                       TrafficController trafficController,
-                                      StatisticsTracker statisticsTracker) {
-        Thread[] verticalVehicles = new Thread[VEHICLE_COUNT];
-        Thread[] horizontalVehicles = new Thread[VEHICLE_COUNT];
-        
-        for (int i = 0; i < VEHICLE_COUNT; i++) {
-            // Create vertical lane vehicle
-            Vehicle verticalVehicle = new VerticalVehicle(lane1, trafficLight1, 
-                                                        trafficController, statisticsTracker);
-            verticalVehicles[i] = new Thread(verticalVehicle, "VerticalVehicle-" + i);
-            
-            // Register vehicle sprite with traffic controller
-            trafficController.registerVehicle(verticalVehicle.getSprite(), true);
-            
-            // Create horizontal lane vehicle
-            Vehicle horizontalVehicle = new HorizontalVehicle(lane2, trafficLight2, 
-                                                            trafficController, statisticsTracker);
-            horizontalVehicles[i] = new Thread(horizontalVehicle, "HorizontalVehicle-" + i);
-            
-            // Register vehicle sprite with traffic controller
-            trafficController.registerVehicle(horizontalVehicle.getSprite(), false);
-            
-            // Start both vehicles
-            verticalVehicles[i].start();
-            horizontalVehicles[i].start();
-            
-            // Delay between vehicle spawns
-            try {
-                Thread.sleep(VEHICLE_SPAWN_DELAY_MS);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                System.err.println("Interrupted while spawning vehicles");
-                break;
-            }
-        }
+                                      VehicleLauncher vehicleLauncher) {
+        ArrivalGenerator generator = ArrivalGenerator.fromSystemProperties(approach,
+            DemandProfile.constant(DEFAULT_ARRIVAL_RATE), ArrivalGenerator.ArrivalProcess.DETERMINISTIC,
+            VEHICLE_COUNT);
+        String namePrefix = isVertical ? "VerticalVehicle-" : "HorizontalVehicle-";
+        AtomicInteger arrived = new AtomicInteger();
+        generator.start(scheduler, () -> {
+            Vehicle vehicle = vehiclePool.obtain(isVertical);
+            trafficController.registerVehicle(vehicle, isVertical);
+            vehicleLauncher.launch(vehicle, namePrefix + arrived.getAndIncrement());
+        });
     }
 }
 
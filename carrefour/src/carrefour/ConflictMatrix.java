@@ -0,0 +1,168 @@
+package carrefour;
+
+/**
+ * Precomputed table of which junction movements may not run at the same
+ * time. Each row is a bit mask over {@link Movement} ordinals, so checking a
+ * whole phase against a movement is a single AND.
+ * 
+ * <p>The standard matrix is derived from the junction's geometry rather than
+ * typed in. Every leg has an entry point and an exit point on a circle
+ * around the junction, in clockwise order: north entry, north exit, east
+ * entry, east exit and so on. A movement is the chord from its entry point to
+ * its exit point. Two movements conflict when their chords cross, which is
+ * when exactly one end of one chord lies between the ends of the other, or
+ * when they merge into the same exit. Movements from the same entry diverge
+ * and do not conflict. This gives the usual result: opposing through
+ * movements and opposing left turns are compatible, and a left turn conflicts
+ * with the opposing through movement.
+ * 
+ * @author PC-DELL
+ */
+public class ConflictMatrix {
+    private static final Movement[] MOVEMENTS = Movement.values();
+    private static final int CIRCLE_POINTS = 2 * Movement.Approach.values().length;
+    
+    private final long[] conflicts = new long[MOVEMENTS.length];
+    
+    /**
+     * Creates a matrix with no conflicts.
+     */
+    public ConflictMatrix() {
+    }
+    
+    /**
+     * Creates the conflict matrix of a four-leg junction with right-hand
+     * traffic.
+     * 
+     * @return the standard conflict matrix
+     */
+    public static ConflictMatrix standard() {
+        ConflictMatrix matrix = new ConflictMatrix();
+        for (Movement a : MOVEMENTS) {
+            for (Movement b : MOVEMENTS) {
+                if (a.ordinal() < b.ordinal() && pathsConflict(a, b)) {
+                    matrix.addConflict(a, b);
+                }
+            }
+        }
+        return matrix;
+    }
+    
+    /**
+     * Checks whether the paths of two different movements cross or merge.
+     */
+    private static boolean pathsConflict(Movement a, Movement b) {
+        if (a.getApproach() == b.getApproach()) {
+            return false; // Diverging
+        }
+        if (a.getExit() == b.getExit()) {
+            return true; // Merging
+        }
+        int entryA = entryPoint(a);
+        int exitA = exitPoint(a);
+        return isBetween(entryPoint(b), entryA, exitA) != isBetween(exitPoint(b), entryA, exitA);
+    }
+    
+    /**
+     * Gets the position of a movement's entry on the circle.
+     */
+    private static int entryPoint(Movement movement) {
+        return 2 * movement.getApproach().ordinal();
+    }
+    
+    /**
+     * Gets the position of a movement's exit on the circle.
+     */
+    private static int exitPoint(Movement movement) {
+        return 2 * movement.getExit().ordinal() + 1;
+    }
+    
+    /**
+     * Checks whether a point lies strictly inside the clockwise arc from one
+     * point to another.
+     */
+    private static boolean isBetween(int point, int from, int to) {
+        int offset = Math.floorMod(point - from, CIRCLE_POINTS);
+        return offset > 0 && offset < Math.floorMod(to - from, CIRCLE_POINTS);
+    }
+    
+    /**
+     * Marks two movements as conflicting, in both directions.
+     * 
+     * @param a the first movement
+     * @param b the second movement
+     * @throws IllegalArgumentException if both are the same movement
+     */
+    public void addConflict(Movement a, Movement b) {
+        if (a == b) {
+            throw new IllegalArgumentException("A movement cannot conflict with itself");
+        }
+        conflicts[a.ordinal()] |= b.mask();
+        conflicts[b.ordinal()] |= a.mask();
+    }
+    
+    /**
+     * Checks whether two movements conflict.
+     * 
+     * @param a the first movement
+     * @param b the second movement
+     * @return true if they may not run at the same time
+     */
+    public boolean conflicts(Movement a, Movement b) {
+        return (conflicts[a.ordinal()] & b.mask()) != 0;
+    }
+    
+    /**
+     * Gets the movements that conflict with a movement.
+     * 
+     * @param movement the movement
+     * @return the mask of conflicting movements
+     */
+    public long getConflictMask(Movement movement) {
+        return conflicts[movement.ordinal()];
+    }
+    
+    /**
+     * Checks whether a movement can join a phase.
+     * 
+     * @param phase the mask of movements already in the phase
+     * @param movement the movement to add
+     * @return true if the movement conflicts with none of them
+     */
+    public boolean isCompatible(long phase, Movement movement) {
+        return (phase & conflicts[movement.ordinal()]) == 0;
+    }
+    
+    /**
+     * Checks whether all movements of a phase can run at the same time.
+     * 
+     * @param phase the mask of movements
+     * @return true if no two of them conflict
+     */
+    public boolean isCompatible(long phase) {
+        for (Movement movement : MOVEMENTS) {
+            if ((phase & movement.mask()) != 0 && !isCompatible(phase, movement)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Formats the matrix as a table with an X for every conflict.
+     * 
+     * @return the table, one line per movement
+     */
+    @Override
+    public String toString() {
+        StringBuilder table = new StringBuilder();
+        for (Movement a : MOVEMENTS) {
+            table.append(String.format("%-14s", a));
+            for (Movement b : MOVEMENTS) {
+                table.append(conflicts(a, b) ? " X" : " .");
+            }
+            table.append('\n');
+        }
+        return table.toString();
+    }
+}
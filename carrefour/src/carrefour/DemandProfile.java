@@ -0,0 +1,178 @@
+package carrefour;
+
+import java.util.Arrays;
+
+/**
+ * Arrival rate of one approach as a function of time: a sequence of
+ * segments with a constant rate each, optionally repeating with a fixed
+ * period, such as a daily cycle of off-peak and rush-hour demand.
+ * 
+ * <p>{@link #parse} reads the compact form used by the system properties:
+ * {@code "1.5"} for a constant 1.5 vehicles/s, or
+ * {@code "0:0.5,60:2,120:0.5/180"} for 0.5 vehicles/s from second 0, 2 from
+ * second 60 and 0.5 from second 120, the whole profile repeating every 180
+ * seconds. Without the {@code /period} suffix the last rate holds forever.
+ * 
+ * @author PC-DELL
+ */
+public final class DemandProfile {
+    private final long[] segmentStartsMs;
+    private final double[] ratesPerSecond;
+    private final long periodMs;
+    private final double maxRate;
+    
+    /**
+     * Creates a piecewise-constant profile.
+     * 
+     * @param segmentStartsMs start time of each segment, strictly increasing, the first one 0
+     * @param ratesPerSecond arrival rate of each segment, in vehicles per second
+     * @param periodMs length after which the profile repeats, or 0 for no repetition
+     * @throws IllegalArgumentException if the segments are inconsistent
+     */
+    public DemandProfile(long[] segmentStartsMs, double[] ratesPerSecond, long periodMs) {
+        if (segmentStartsMs.length == 0 || segmentStartsMs.length != ratesPerSecond.length) {
+            throw new IllegalArgumentException("Need one rate per segment and at least one segment");
+        }
+        if (segmentStartsMs[0] != 0) {
+            throw new IllegalArgumentException("The first segment must start at 0");
+        }
+        double max = 0;
+        for (int i = 0; i < ratesPerSecond.length; i++) {
+            if (i > 0 && segmentStartsMs[i] <= segmentStartsMs[i - 1]) {
+                throw new IllegalArgumentException("Segment starts must be strictly increasing");
+            }
+            if (!(ratesPerSecond[i] >= 0) || Double.isInfinite(ratesPerSecond[i])) {
+                throw new IllegalArgumentException("Rates must be finite and non-negative");
+            }
+            max = Math.max(max, ratesPerSecond[i]);
+        }
+        if (periodMs < 0 || (periodMs > 0 && periodMs <= segmentStartsMs[segmentStartsMs.length - 1])) {
+            throw new IllegalArgumentException("Period must be 0 or longer than the last segment start");
+        }
+        this.segmentStartsMs = segmentStartsMs.clone();
+        this.ratesPerSecond = ratesPerSecond.clone();
+        this.periodMs = periodMs;
+        this.maxRate = max;
+    }
+    
+    /**
+     * Creates a profile with the same rate at all times.
+     * 
+     * @param ratePerSecond arrival rate in vehicles per second
+     * @return the profile
+     */
+    public static DemandProfile constant(double ratePerSecond) {
+        return new DemandProfile(new long[] {0}, new double[] {ratePerSecond}, 0);
+    }
+    
+    /**
+     * Parses the compact form described in the class comment.
+     * 
+     * @param spec the profile, e.g. {@code "2"} or {@code "0:0.5,60:2/120"}
+     * @return the profile
+     * @throws IllegalArgumentException if the text is malformed
+     */
+    public static DemandProfile parse(String spec) {
+        String text = spec.trim();
+        long periodMs = 0;
+        try {
+            int slash = text.indexOf('/');
+            if (slash >= 0) {
+                periodMs = secondsToMs(text.substring(slash + 1));
+                text = text.substring(0, slash);
+            }
+            if (text.indexOf(':') < 0) {
+                return new DemandProfile(new long[] {0}, new double[] {Double.parseDouble(text)}, periodMs);
+            }
+            String[] segments = text.split(",");
+            long[] starts = new long[segments.length];
+            double[] rates = new double[segments.length];
+            for (int i = 0; i < segments.length; i++) {
+                String[] parts = segments[i].split(":");
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException("Malformed segment '" + segments[i] + "' in " + spec);
+                }
+                starts[i] = secondsToMs(parts[0]);
+                rates[i] = Double.parseDouble(parts[1].trim());
+            }
+            return new DemandProfile(starts, rates, periodMs);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Malformed demand profile " + spec, ex);
+        }
+    }
+    
+    /**
+     * Converts a number of seconds in text form to milliseconds.
+     */
+    private static long secondsToMs(String seconds) {
+        return Math.round(Double.parseDouble(seconds.trim()) * 1000);
+    }
+    
+    /**
+     * Gets the arrival rate at a given time.
+     * 
+     * @param timeMs time since the start of the profile, in milliseconds
+     * @return the rate in vehicles per second
+     */
+    public double getRate(long timeMs) {
+        return ratesPerSecond[segmentAt(timeMs)];
+    }
+    
+    /**
+     * Gets the first time after the given one at which the rate may change.
+     * 
+     * @param timeMs time since the start of the profile, in milliseconds
+     * @return the start of the next segment, or Long.MAX_VALUE if the rate never changes again
+     */
+    public long getNextChange(long timeMs) {
+        int segment = segmentAt(timeMs);
+        if (segment + 1 < segmentStartsMs.length) {
+            return timeMs - offsetInPeriod(timeMs) + segmentStartsMs[segment + 1];
+        }
+        if (periodMs > 0) {
+            return timeMs - offsetInPeriod(timeMs) + periodMs;
+        }
+        return Long.MAX_VALUE;
+    }
+    
+    /**
+     * Gets the highest rate of the profile, which bounds the rate at any
+     * time.
+     * 
+     * @return the maximum rate in vehicles per second
+     */
+    public double getMaxRate() {
+        return maxRate;
+    }
+    
+    /**
+     * Finds the segment containing a time.
+     */
+    private int segmentAt(long timeMs) {
+        int index = Arrays.binarySearch(segmentStartsMs, offsetInPeriod(timeMs));
+        return index >= 0 ? index : -index - 2;
+    }
+    
+    /**
+     * Maps a time into the first period of the profile.
+     */
+    private long offsetInPeriod(long timeMs) {
+        long time = Math.max(0, timeMs);
+        return periodMs > 0 ? time % periodMs : time;
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < segmentStartsMs.length; i++) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(segmentStartsMs[i] / 1000.0).append(':').append(ratesPerSecond[i]);
+        }
+        if (periodMs > 0) {
+            text.append('/').append(periodMs / 1000.0);
+        }
+        return text.toString();
+    }
+}
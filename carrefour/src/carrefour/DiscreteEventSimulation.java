@@ -0,0 +1,556 @@
+package carrefour;
+
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless discrete-event version of the intersection simulation.
+ * 
+ * <p>Instead of sleeping threads, every step of a vehicle's life is a
+ * timestamped event on a virtual millisecond clock. Events are processed in
+ * time order from a priority queue, so simulated time advances as fast as the
+ * events can be handled. The model mirrors the threaded one: each vehicle
+ * takes its lane permit, then its traffic light permit, crosses, and releases
+ * both, while the controller switches the lights when its
+ * {@link SignalControlStrategy} decides to. Permits are granted in FIFO order
+ * like {@link Semaphore}. With {@link PlatoonAdmission}, lights are stocked
+ * with single-use tickets, vehicles leave the stop line after one headway,
+ * and each switch withdraws the unused tickets and waits out the clearance
+ * interval, as in {@link TrafficLightCycle}.
+ * 
+ * <p>Each approach has its own {@link ArrivalGenerator}, pulled one arrival
+ * at a time on the virtual clock, so demand can be Poisson or follow a
+ * time-varying {@link DemandProfile} per direction.
+ * 
+ * <p>Vehicle state lives in a {@link VehicleTable}, and each vehicle reuses a
+ * single pooled event object for all of its steps, so long runs allocate
+ * almost nothing once the population has reached its steady state.
+ * 
+ * @author PC-DELL
+ */
+public class DiscreteEventSimulation {
+    private static final int VERTICAL = VehicleTable.LANE_VERTICAL;
+    private static final int HORIZONTAL = VehicleTable.LANE_HORIZONTAL;
+    private static final int NO_VEHICLE = -1;
+    
+    private static final int ARRIVAL = 0;
+    private static final int LANE_ACQUIRED = 1;
+    private static final int LIGHT_ACQUIRED = 2;
+    private static final int CROSSING_DONE = 3;
+    private static final int PHASE_DECISION = 4;
+    private static final int CONTROLLER_ACQUIRED = 5;
+    private static final int LANE_CLEARED = 6;
+    
+    private static final long DEFAULT_SPAWN_INTERVAL_MS = 600;
+    private static final long DEFAULT_PHASE_INTERVAL_MS = 2000;
+    private static final long DEFAULT_CROSSING_TIME_MS = 100;
+    
+    private final StatisticsTracker statisticsTracker;
+    private final ArrivalGenerator[] arrivals;
+    private final SignalControlStrategy signalStrategy;
+    private final long crossingTimeMs;
+    private final PlatoonAdmission platoonAdmission;
+    
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private final ArrayDeque<Event> eventPool = new ArrayDeque<>();
+    private final VehicleTable vehicles = new VehicleTable();
+    private final SimSemaphore[] lanes = { new SimSemaphore(1), new SimSemaphore(1) };
+    private final SimSemaphore[] trafficLights = { new SimSemaphore(1), new SimSemaphore(0) };
+    
+    private long now;
+    private long sequence;
+    private long processedEvents;
+    private int currentLightState = 1; // 1 = light1 green, 2 = light2 green
+    private long greenStartMs;
+    private long phaseSwitches;
+    private final int[] waiting = new int[2]; // Vehicles spawned but not yet crossed, per direction
+    
+    /**
+     * A scheduled event. Events at the same time run in scheduling order.
+     */
+    private static final class Event implements Comparable<Event> {
+        long time;
+        long sequence;
+        int type;
+        int vehicle;
+        
+        @Override
+        public int compareTo(Event other) {
+            if (time != other.time) {
+                return Long.compare(time, other.time);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+    
+    /**
+     * Event-driven counterpart of {@link Semaphore}: a blocked acquire parks
+     * its continuation event, and a release schedules the oldest one.
+     */
+    private final class SimSemaphore {
+        private int count;
+        private final ArrayDeque<Event> waiters = new ArrayDeque<>();
+        
+        SimSemaphore(int initialCount) {
+            this.count = initialCount;
+        }
+        
+        void acquire(Event onAcquired) {
+            if (count > 0 && waiters.isEmpty()) {
+                count--;
+                schedule(onAcquired, now);
+            } else {
+                waiters.add(onAcquired);
+            }
+        }
+        
+        void release() {
+            Event next = waiters.poll();
+            if (next != null) {
+                schedule(next, now);
+            } else {
+                count++;
+            }
+        }
+        
+        void release(int permits) {
+            for (int i = 0; i < permits; i++) {
+                release();
+            }
+        }
+        
+        void drain() {
+            count = 0;
+        }
+    }
+    
+    /**
+     * Creates a simulation with the same timings as the threaded application.
+     * 
+     * @param statisticsTracker the statistics tracker to feed (can be null)
+     */
+    public DiscreteEventSimulation(StatisticsTracker statisticsTracker) {
+        this(statisticsTracker, DEFAULT_SPAWN_INTERVAL_MS,
+             DEFAULT_PHASE_INTERVAL_MS, DEFAULT_CROSSING_TIME_MS);
+    }
+    
+    /**
+     * Creates a simulation with custom timings.
+     * 
+     * @param statisticsTracker the statistics tracker to feed (can be null)
+     * @param spawnIntervalMs virtual time between vehicle pairs
+     * @param phaseIntervalMs virtual time between traffic light switches
+     * @param crossingTimeMs virtual time a vehicle needs to cross
+     * @throws IllegalArgumentException if an interval is not positive
+     */
+    public DiscreteEventSimulation(StatisticsTracker statisticsTracker, long spawnIntervalMs,
+                                   long phaseIntervalMs, long crossingTimeMs) {
+        this(statisticsTracker, fixedArrivals(spawnIntervalMs), fixedArrivals(spawnIntervalMs),
+             phaseIntervalMs, crossingTimeMs);
+    }
+    
+    /**
+     * Creates a simulation with its own arrival generator per approach. The
+     * generators must be fresh: their time 0 is the start of the simulation.
+     * 
+     * @param statisticsTracker the statistics tracker to feed (can be null)
+     * @param verticalArrivals arrivals of the vertical approach
+     * @param horizontalArrivals arrivals of the horizontal approach
+     * @param phaseIntervalMs virtual time between traffic light switches
+     * @param crossingTimeMs virtual time a vehicle needs to cross
+     * @throws IllegalArgumentException if an interval is not positive
+     */
+    public DiscreteEventSimulation(StatisticsTracker statisticsTracker, ArrivalGenerator verticalArrivals,
+                                   ArrivalGenerator horizontalArrivals, long phaseIntervalMs,
+                                   long crossingTimeMs) {
+        this(statisticsTracker, verticalArrivals, horizontalArrivals,
+             new FixedTimeSignalStrategy(phaseIntervalMs), crossingTimeMs);
+    }
+    
+    /**
+     * Creates a simulation with its own arrival generator per approach and
+     * a signal control strategy. The generators and the strategy must be
+     * fresh and not shared with another simulation.
+     * 
+     * @param statisticsTracker the statistics tracker to feed (can be null)
+     * @param verticalArrivals arrivals of the vertical approach
+     * @param horizontalArrivals arrivals of the horizontal approach
+     * @param signalStrategy decides when each green ends
+     * @param crossingTimeMs virtual time a vehicle needs to cross
+     * @throws IllegalArgumentException if the crossing time is not positive
+     */
+    public DiscreteEventSimulation(StatisticsTracker statisticsTracker, ArrivalGenerator verticalArrivals,
+                                   ArrivalGenerator horizontalArrivals, SignalControlStrategy signalStrategy,
+                                   long crossingTimeMs) {
+        this(statisticsTracker, verticalArrivals, horizontalArrivals, signalStrategy, crossingTimeMs, null);
+    }
+    
+    /**
+     * Creates a simulation with its own arrival generator per approach, a
+     * signal control strategy and optional platoon admission. The generators
+     * and the strategy must be fresh and not shared with another simulation.
+     * 
+     * @param statisticsTracker the statistics tracker to feed (can be null)
+     * @param verticalArrivals arrivals of the vertical approach
+     * @param horizontalArrivals arrivals of the horizontal approach
+     * @param signalStrategy decides when each green ends
+     * @param crossingTimeMs virtual time a vehicle needs to cross
+     * @param platoonAdmission platoon admission settings (null to admit one vehicle at a time)
+     * @throws IllegalArgumentException if the crossing time is not positive
+     */
+    public DiscreteEventSimulation(StatisticsTracker statisticsTracker, ArrivalGenerator verticalArrivals,
+                                   ArrivalGenerator horizontalArrivals, SignalControlStrategy signalStrategy,
+                                   long crossingTimeMs, PlatoonAdmission platoonAdmission) {
+        if (crossingTimeMs <= 0) {
+            throw new IllegalArgumentException("Intervals must be positive");
+        }
+        this.statisticsTracker = statisticsTracker;
+        this.arrivals = new ArrivalGenerator[] { verticalArrivals, horizontalArrivals };
+        this.signalStrategy = signalStrategy;
+        this.crossingTimeMs = crossingTimeMs;
+        this.platoonAdmission = platoonAdmission;
+        
+        // Arrival events carry their approach in the vehicle field
+        scheduleArrival(newEvent(ARRIVAL, VERTICAL));
+        scheduleArrival(newEvent(ARRIVAL, HORIZONTAL));
+        signalStrategy.phaseStarted(currentLightState);
+        admitPlatoon(VERTICAL, signalStrategy.getMaxGreenMs());
+        schedule(newEvent(PHASE_DECISION, NO_VEHICLE), signalStrategy.getDecisionIntervalMs());
+    }
+    
+    /**
+     * Creates the evenly spaced arrivals of earlier versions.
+     * 
+     * @throws IllegalArgumentException if the interval is not positive
+     */
+    private static ArrivalGenerator fixedArrivals(long spawnIntervalMs) {
+        if (spawnIntervalMs <= 0) {
+            throw new IllegalArgumentException("Intervals must be positive");
+        }
+        return new ArrivalGenerator(DemandProfile.constant(1000.0 / spawnIntervalMs),
+                                    ArrivalGenerator.ArrivalProcess.DETERMINISTIC, 0, 0);
+    }
+    
+    /**
+     * Runs the simulation until the virtual clock reaches the given time.
+     * 
+     * @param endTimeMs the virtual time to stop at, in milliseconds
+     */
+    public void runUntil(long endTimeMs) {
+        while (!events.isEmpty() && events.peek().time <= endTimeMs) {
+            Event event = events.poll();
+            now = event.time;
+            processedEvents++;
+            handle(event);
+        }
+        now = Math.max(now, endTimeMs);
+    }
+    
+    /**
+     * Dispatches one event.
+     */
+    private void handle(Event event) {
+        int vehicle = event.vehicle;
+        switch (event.type) {
+            case ARRIVAL:
+                spawn(vehicle);
+                scheduleArrival(event);
+                break;
+            case LANE_ACQUIRED:
+                // Wait for green light
+                vehicles.setLaneTime(vehicle, now);
+                vehicles.setState(vehicle, VehicleTable.STATE_WAITING_LIGHT);
+                event.type = LIGHT_ACQUIRED;
+                trafficLights[vehicles.getLane(vehicle)].acquire(event);
+                break;
+            case LIGHT_ACQUIRED:
+                vehicles.setLightTime(vehicle, now);
+                vehicles.setState(vehicle, VehicleTable.STATE_CROSSING);
+                if (platoonAdmission != null) {
+                    // Leave the stop line after one headway; the ticket is used up
+                    event.type = LANE_CLEARED;
+                    schedule(event, now + Math.min(platoonAdmission.getSaturationHeadwayMs(), crossingTimeMs));
+                } else {
+                    event.type = CROSSING_DONE;
+                    schedule(event, now + crossingTimeMs);
+                }
+                break;
+            case LANE_CLEARED:
+                lanes[vehicles.getLane(vehicle)].release();
+                event.type = CROSSING_DONE;
+                schedule(event, vehicles.getLightTime(vehicle) + crossingTimeMs);
+                break;
+            case CROSSING_DONE:
+                // Exit intersection - release the semaphores still held
+                int direction = vehicles.getLane(vehicle);
+                if (platoonAdmission == null) {
+                    trafficLights[direction].release();
+                    lanes[direction].release();
+                }
+                waiting[direction]--;
+                recordCrossing(vehicle);
+                vehicles.release(vehicle);
+                eventPool.add(event);
+                break;
+            case PHASE_DECISION:
+                if (shouldSwitch()) {
+                    eventPool.add(event);
+                    switchTrafficLights();
+                } else {
+                    admitPlatoon(currentLightState == 1 ? VERTICAL : HORIZONTAL,
+                                 signalStrategy.getDecisionIntervalMs());
+                    schedule(event, now + signalStrategy.getDecisionIntervalMs());
+                }
+                break;
+            case CONTROLLER_ACQUIRED:
+                // The controller now holds the old green permit, or the platoon has cleared
+                if (platoonAdmission != null) {
+                    currentLightState = 3 - currentLightState;
+                    admitPlatoon(currentLightState == 1 ? VERTICAL : HORIZONTAL, signalStrategy.getMaxGreenMs());
+                } else if (currentLightState == 1) {
+                    trafficLights[HORIZONTAL].release();
+                    currentLightState = 2;
+                } else {
+                    currentLightState = 1;
+                }
+                greenStartMs = now;
+                phaseSwitches++;
+                signalStrategy.phaseStarted(currentLightState);
+                event.type = PHASE_DECISION;
+                schedule(event, now + signalStrategy.getDecisionIntervalMs());
+                break;
+            default:
+                throw new IllegalStateException("Unknown event type " + event.type);
+        }
+    }
+    
+    /**
+     * Creates a vehicle at the current time and queues it for its lane.
+     */
+    private void spawn(int direction) {
+        int vehicle = vehicles.allocate(direction, 0, VehicleTable.NO_STOP, 0, now);
+        waiting[direction]++;
+        if (statisticsTracker != null) {
+            if (direction == VERTICAL) {
+                statisticsTracker.verticalVehicleStarted();
+            } else {
+                statisticsTracker.horizontalVehicleStarted();
+            }
+        }
+        lanes[direction].acquire(newEvent(LANE_ACQUIRED, vehicle));
+    }
+    
+    /**
+     * Asks the strategy whether the current green should end, with the same
+     * queue definition as the tracker's waiting counts.
+     */
+    private boolean shouldSwitch() {
+        int green = currentLightState == 1 ? VERTICAL : HORIZONTAL;
+        return signalStrategy.shouldSwitch(currentLightState, now - greenStartMs,
+                                           waiting[green], waiting[1 - green]);
+    }
+    
+    /**
+     * Mirrors TrafficLightCycle.switchLights: the controller takes the
+     * permit of the green light (waiting for a crossing vehicle if needed) and
+     * hands a permit to the other light.
+     */
+    private void switchTrafficLights() {
+        if (platoonAdmission != null) {
+            trafficLights[currentLightState == 1 ? VERTICAL : HORIZONTAL].drain();
+            schedule(newEvent(CONTROLLER_ACQUIRED, NO_VEHICLE), now + platoonAdmission.getClearanceMs());
+        } else if (currentLightState == 1) {
+            trafficLights[VERTICAL].acquire(newEvent(CONTROLLER_ACQUIRED, NO_VEHICLE));
+        } else {
+            trafficLights[VERTICAL].release();
+            trafficLights[HORIZONTAL].acquire(newEvent(CONTROLLER_ACQUIRED, NO_VEHICLE));
+        }
+    }
+    
+    /**
+     * Mirrors TrafficLightCycle.admitPlatoon: tops a green light up to the
+     * tickets a platoon needs for the given green time.
+     */
+    private void admitPlatoon(int direction, long greenMs) {
+        if (platoonAdmission != null) {
+            trafficLights[direction].release(
+                platoonAdmission.platoonSize(greenMs) - trafficLights[direction].count);
+        }
+    }
+    
+    /**
+     * Reports a completed crossing to the statistics tracker.
+     */
+    private void recordCrossing(int vehicle) {
+        if (statisticsTracker == null) {
+            return;
+        }
+        long waitTime = vehicles.getLightTime(vehicle) - vehicles.getSpawnTime(vehicle);
+        statisticsTracker.recordStageLatency(VehicleStage.LANE_WAIT,
+            TimeUnit.MILLISECONDS.toNanos(vehicles.getLaneTime(vehicle) - vehicles.getSpawnTime(vehicle)));
+        statisticsTracker.recordStageLatency(VehicleStage.LIGHT_WAIT,
+            TimeUnit.MILLISECONDS.toNanos(vehicles.getLightTime(vehicle) - vehicles.getLaneTime(vehicle)));
+        statisticsTracker.recordStageLatency(VehicleStage.CROSSING,
+            TimeUnit.MILLISECONDS.toNanos(now - vehicles.getLightTime(vehicle)));
+        statisticsTracker.recordStageLatency(VehicleStage.EXIT, 0); // Permits are released instantly
+        if (vehicles.getLane(vehicle) == VERTICAL) {
+            statisticsTracker.verticalVehicleCrossed(waitTime);
+        } else {
+            statisticsTracker.horizontalVehicleCrossed(waitTime);
+        }
+    }
+    
+    /**
+     * Takes an event from the pool, or creates one if the pool is empty.
+     */
+    private Event newEvent(int type, int vehicle) {
+        Event event = eventPool.poll();
+        if (event == null) {
+            event = new Event();
+        }
+        event.type = type;
+        event.vehicle = vehicle;
+        return event;
+    }
+    
+    /**
+     * Schedules the next arrival of the event's approach, or retires the
+     * event if demand has ended.
+     */
+    private void scheduleArrival(Event event) {
+        long time = arrivals[event.vehicle].nextArrivalTimeMs();
+        if (time == ArrivalGenerator.NO_ARRIVAL) {
+            eventPool.add(event);
+        } else {
+            schedule(event, time);
+        }
+    }
+    
+    /**
+     * Schedules an event at the given virtual time.
+     */
+    private void schedule(Event event, long time) {
+        event.time = time;
+        event.sequence = sequence++;
+        events.add(event);
+    }
+    
+    /**
+     * Gets the current virtual time.
+     * 
+     * @return the virtual time in milliseconds
+     */
+    public long getCurrentTimeMs() {
+        return now;
+    }
+    
+    /**
+     * Gets the current traffic light state.
+     * 
+     * @return 1 for vertical green, 2 for horizontal green
+     */
+    public int getCurrentLightState() {
+        return currentLightState;
+    }
+    
+    /**
+     * Gets the vehicle table holding the vehicles currently in the simulation.
+     * 
+     * @return the vehicle table
+     */
+    public VehicleTable getVehicles() {
+        return vehicles;
+    }
+    
+    /**
+     * Gets the number of completed light switches.
+     * 
+     * @return the phase switch count
+     */
+    public long getPhaseSwitchCount() {
+        return phaseSwitches;
+    }
+    
+    /**
+     * Gets the number of events processed so far.
+     * 
+     * @return the event count
+     */
+    public long getProcessedEvents() {
+        return processedEvents;
+    }
+    
+    /**
+     * Prints the wait time percentiles of one direction.
+     */
+    private static void printPercentiles(String direction, WaitTimeHistogram histogram) {
+        System.out.printf("Wait percentiles %s: p50 %d, p90 %d, p99 %d, p99.9 %d, max %d ms%n",
+                          direction, histogram.getP50(), histogram.getP90(), histogram.getP99(),
+                          histogram.getP999(), histogram.getMax());
+    }
+    
+    /**
+     * Runs a headless simulation and prints the resulting statistics.
+     * Arrivals and signal control are configured like the GUI's, see
+     * {@link ArrivalGenerator#fromSystemProperties} and
+     * {@link SignalControlStrategy#fromSystemProperties}.
+     * 
+     * @param args optional simulated duration in hours (default 24)
+     */
+    public static void main(String[] args) {
+        double hours = args.length > 0 ? Double.parseDouble(args[0]) : 24;
+        long endTimeMs = (long) (hours * 3600000);
+        
+        StatisticsTracker statisticsTracker = new StatisticsTracker();
+        // Same carrefour.arrivals.* properties as the GUI, in virtual time
+        DemandProfile defaultProfile = DemandProfile.constant(1000.0 / DEFAULT_SPAWN_INTERVAL_MS);
+        ArrivalGenerator verticalArrivals = ArrivalGenerator.fromSystemProperties("vertical",
+            defaultProfile, ArrivalGenerator.ArrivalProcess.DETERMINISTIC, 0);
+        ArrivalGenerator horizontalArrivals = ArrivalGenerator.fromSystemProperties("horizontal",
+            defaultProfile, ArrivalGenerator.ArrivalProcess.DETERMINISTIC, 0);
+        SignalControlStrategy signalStrategy =
+            SignalControlStrategy.fromSystemProperties(DEFAULT_PHASE_INTERVAL_MS);
+        PlatoonAdmission platoonAdmission = PlatoonAdmission.fromSystemProperties();
+        DiscreteEventSimulation simulation = new DiscreteEventSimulation(statisticsTracker, verticalArrivals,
+            horizontalArrivals, signalStrategy, DEFAULT_CROSSING_TIME_MS, platoonAdmission);
+        
+        long startNanos = System.nanoTime();
+        simulation.runUntil(endTimeMs);
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        
+        System.out.printf("Simulated %.1f h in %.2f s (%d events)%n",
+                          hours, elapsedSeconds, simulation.getProcessedEvents());
+        System.out.printf("Signal control: %s, %d switches%n", signalStrategy, simulation.getPhaseSwitchCount());
+        if (signalStrategy instanceof AdaptiveSignalStrategy) {
+            AdaptiveSignalStrategy adaptive = (AdaptiveSignalStrategy) signalStrategy;
+            System.out.printf("Gap-outs: %d, max-outs: %d%n",
+                              adaptive.getGapOutCount(), adaptive.getMaxOutCount());
+        }
+        StatisticsSnapshot snapshot = statisticsTracker.snapshot();
+        if (platoonAdmission != null) {
+            long greens = simulation.getPhaseSwitchCount() + 1;
+            System.out.printf("Admission: %s, %.1f crossings per green%n", platoonAdmission,
+                              snapshot.getTotalVehiclesCrossed() / (double) greens);
+        }
+        System.out.printf("Crossed: %d (vertical %d, horizontal %d)%n",
+                          snapshot.getTotalVehiclesCrossed(),
+                          snapshot.getVerticalVehiclesCrossed(),
+                          snapshot.getHorizontalVehiclesCrossed());
+        System.out.printf("Waiting: vertical %d, horizontal %d%n",
+                          snapshot.getVerticalVehiclesWaiting(),
+                          snapshot.getHorizontalVehiclesWaiting());
+        System.out.printf("Average wait: vertical %.1f ms, horizontal %.1f ms, overall %.1f ms%n",
+                          snapshot.getAverageVerticalWaitTime(),
+                          snapshot.getAverageHorizontalWaitTime(),
+                          snapshot.getOverallAverageWaitTime());
+        printPercentiles("vertical", statisticsTracker.getVerticalWaitTimeHistogram());
+        printPercentiles("horizontal", statisticsTracker.getHorizontalWaitTimeHistogram());
+        for (VehicleStage stage : VehicleStage.values()) {
+            WaitTimeHistogram histogram = statisticsTracker.getStageLatencyHistogram(stage);
+            System.out.printf("Stage %s: p50 %.1f, p99 %.1f, max %.1f ms%n", stage,
+                              histogram.getP50() / 1000.0, histogram.getP99() / 1000.0,
+                              histogram.getMax() / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package carrefour;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Asynchronous log for high-frequency simulation events.
+ * 
+ * <p>Instead of formatting a message and going through the
+ * {@code java.util.logging} handlers on the calling thread, {@link #log}
+ * stores a fixed-size binary record (event type, vehicle id, two arguments
+ * and a timestamp) in a preallocated ring buffer and returns. A single
+ * daemon thread drains the ring, formats the records and writes them out in
+ * batches. Any number of threads may log; when the ring is full, new records
+ * are dropped and counted rather than blocking the caller.
+ * 
+ * <p>The level is read once from {@code carrefour.eventlog.level}
+ * ({@code off}, {@code info} or {@code fine}, default {@code info}) into a
+ * static final field, so a disabled {@link #isEnabled} check is folded away
+ * by the JIT and costs nothing. Records go to standard error, or to the file
+ * named by {@code carrefour.eventlog.file}. {@link #close} drains the ring
+ * and flushes the output; a shutdown hook calls it, so records logged before
+ * {@code System.exit} are not lost.
+ * 
+ * @author PC-DELL
+ */
+public final class EventLog {
+    /** Level that disables every record. */
+    public static final int OFF = 0;
+    /** Level for crossings and light switches. */
+    public static final int INFO = 1;
+    /** Level for every step of a vehicle. */
+    public static final int FINE = 2;
+    
+    /** A vehicle entered the intersection; arg1 is its direction (VehicleTable lane id). */
+    public static final int VEHICLE_ENTERING = 1;
+    /** A vehicle crossed; arg1 is its direction, arg2 its wait time in ms. */
+    public static final int VEHICLE_CROSSED = 2;
+    /** The lights switched; arg1 is the new light state. */
+    public static final int LIGHT_SWITCHED = 3;
+    /** A vehicle left without crossing; arg1 is its direction, arg2 its patience in ms. */
+    public static final int VEHICLE_GAVE_UP = 4;
+    
+    private static final String LEVEL_PROPERTY = "carrefour.eventlog.level";
+    private static final String FILE_PROPERTY = "carrefour.eventlog.file";
+    private static final int LEVEL = parseLevel(System.getProperty(LEVEL_PROPERTY, "info"));
+    private static final int CAPACITY = 1 << 14; // Records; must be a power of two
+    private static final int RECORD_LONGS = 4;
+    private static final long IDLE_PARK_NANOS = 10_000_000L;
+    private static final long CLOSE_TIMEOUT_MS = 2000;
+    private static final Logger LOGGER = Logger.getLogger(EventLog.class.getName());
+    
+    private static final EventLog INSTANCE = LEVEL == OFF ? null : new EventLog();
+    
+    // Record layout: [type << 32 | vehicle id, arg1, arg2, time ms]
+    private final long[] records = new long[CAPACITY * RECORD_LONGS];
+    private final AtomicLongArray published = new AtomicLongArray(CAPACITY); // claim index + 1 when readable
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long head; // Written only by the writer thread
+    private volatile boolean closed;
+    private final Thread writerThread;
+    private final Writer out;
+    
+    private EventLog() {
+        this.out = openOutput();
+        this.writerThread = new Thread(this::drainLoop, "EventLogWriter");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::drainAndStop, "EventLogShutdown"));
+    }
+    
+    /**
+     * Checks whether records of the given level are kept. Cheap enough to
+     * guard every call site.
+     * 
+     * @param level INFO or FINE
+     * @return true if such records are logged
+     */
+    public static boolean isEnabled(int level) {
+        return level <= LEVEL;
+    }
+    
+    /**
+     * Queues a record if its level is enabled. Never blocks and never
+     * allocates.
+     * 
+     * @param level INFO or FINE
+     * @param type the event type, one of the constants of this class
+     * @param vehicleId the vehicle's id, or -1 if none
+     * @param arg1 first type-specific argument
+     * @param arg2 second type-specific argument
+     */
+    public static void log(int level, int type, int vehicleId, long arg1, long arg2) {
+        if (level <= LEVEL) {
+            INSTANCE.append(type, vehicleId, arg1, arg2);
+        }
+    }
+    
+    /**
+     * Writes out every record logged so far, flushes the output and stops the
+     * writer thread. Records logged afterwards are ignored. Safe to call more
+     * than once.
+     */
+    public static void close() {
+        if (INSTANCE != null) {
+            INSTANCE.drainAndStop();
+        }
+    }
+    
+    /**
+     * Gets the number of records dropped because the ring was full.
+     * 
+     * @return the dropped record count
+     */
+    public static long getDroppedCount() {
+        return INSTANCE != null ? INSTANCE.dropped.get() : 0;
+    }
+    
+    /**
+     * Claims a slot and writes a record into it.
+     */
+    private void append(int type, int vehicleId, long arg1, long arg2) {
+        long claim;
+        do {
+            claim = tail.get();
+            if (claim - head >= CAPACITY) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!tail.compareAndSet(claim, claim + 1));
+        
+        int slot = (int) claim & (CAPACITY - 1);
+        int base = slot * RECORD_LONGS;
+        records[base] = ((long) type << 32) | (vehicleId & 0xFFFFFFFFL);
+        records[base + 1] = arg1;
+        records[base + 2] = arg2;
+        records[base + 3] = System.currentTimeMillis();
+        published.lazySet(slot, claim + 1); // Release: the record is complete
+    }
+    
+    /**
+     * Asks the writer thread to finish the records already published and
+     * waits for it.
+     */
+    private void drainAndStop() {
+        closed = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Writer thread: drains every readable record, then flushes. Returns
+     * once closed and the ring is empty.
+     */
+    private void drainLoop() {
+        StringBuilder line = new StringBuilder(128);
+        SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss.SSS", Locale.ROOT);
+        Date date = new Date();
+        long next = head;
+        long reportedDrops = 0;
+        while (true) {
+            boolean closing = closed; // Read first: records published before close are drained below
+            int drained = 0;
+            int slot = (int) next & (CAPACITY - 1);
+            while (published.get(slot) == next + 1) {
+                int base = slot * RECORD_LONGS;
+                date.setTime(records[base + 3]);
+                line.setLength(0);
+                line.append(timeFormat.format(date)).append(' ');
+                format(line, (int) (records[base] >>> 32), (int) records[base],
+                       records[base + 1], records[base + 2]);
+                write(line);
+                head = ++next; // Frees the slot for producers
+                slot = (int) next & (CAPACITY - 1);
+                drained++;
+            }
+            long drops = dropped.get();
+            if (drops != reportedDrops) {
+                line.setLength(0);
+                line.append("event log full, ").append(drops - reportedDrops).append(" records dropped");
+                write(line);
+                reportedDrops = drops;
+            }
+            if (drained == 0) {
+                flush();
+                if (closing) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+    
+    /**
+     * Appends the text of one record.
+     */
+    private static void format(StringBuilder line, int type, int vehicleId, long arg1, long arg2) {
+        String direction = arg1 == VehicleTable.LANE_VERTICAL ? "Vertical" : "Horizontal";
+        switch (type) {
+            case VEHICLE_ENTERING:
+                line.append(direction).append(" vehicle ").append(vehicleId).append(" entering intersection");
+                break;
+            case VEHICLE_CROSSED:
+                line.append(direction).append(" vehicle ").append(vehicleId)
+                    .append(" completed crossing in ").append(arg2).append("ms");
+                break;
+            case LIGHT_SWITCHED:
+                line.append(arg1 == 1 ? "Traffic light 1 (vertical)" : "Traffic light 2 (horizontal)")
+                    .append(" is now GREEN");
+                break;
+            case VEHICLE_GAVE_UP:
+                line.append(direction).append(" vehicle ").append(vehicleId)
+                    .append(" gave up after ").append(arg2).append("ms");
+                break;
+            default:
+                line.append("event ").append(type).append(" vehicle ").append(vehicleId)
+                    .append(' ').append(arg1).append(' ').append(arg2);
+                break;
+        }
+    }
+    
+    private void write(StringBuilder line) {
+        try {
+            out.append(line).append(System.lineSeparator());
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Could not write event log record", ex);
+        }
+    }
+    
+    private void flush() {
+        try {
+            out.flush();
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Could not flush event log", ex);
+        }
+    }
+    
+    /**
+     * Opens the configured log file, or standard error.
+     */
+    private static Writer openOutput() {
+        String path = System.getProperty(FILE_PROPERTY);
+        if (path != null) {
+            try {
+                return Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8,
+                                               StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Could not open event log " + path + ", using standard error", ex);
+            }
+        }
+        return new BufferedWriter(new OutputStreamWriter(System.err, StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Parses a level name, falling back to INFO.
+     */
+    private static int parseLevel(String value) {
+        switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "off":
+                return OFF;
+            case "fine":
+                return FINE;
+            default:
+                return INFO;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package carrefour;
+
+/**
+ * Baseline strategy: every green lasts the same time, whatever the queues.
+ * 
+ * @author PC-DELL
+ */
+public class FixedTimeSignalStrategy implements SignalControlStrategy {
+    private final long greenMs;
+    
+    /**
+     * Creates a fixed-time strategy.
+     * 
+     * @param greenMs how long each light stays green, in milliseconds
+     * @throws IllegalArgumentException if greenMs is not positive
+     */
+    public FixedTimeSignalStrategy(long greenMs) {
+        if (greenMs <= 0) {
+            throw new IllegalArgumentException("Green interval must be positive");
+        }
+        this.greenMs = greenMs;
+    }
+    
+    @Override
+    public long getDecisionIntervalMs() {
+        return greenMs;
+    }
+    
+    @Override
+    public long getMaxGreenMs() {
+        return greenMs;
+    }
+    
+    @Override
+    public void phaseStarted(int lightState) {
+    }
+    
+    @Override
+    public boolean shouldSwitch(int lightState, long greenElapsedMs, int greenQueue, int redQueue) {
+        return greenElapsedMs >= greenMs;
+    }
+    
+    @Override
+    public String toString() {
+        return "fixed " + greenMs + " ms";
+    }
+}
@@ -0,0 +1,113 @@
+package carrefour;
+
+import java.util.Arrays;
+
+/**
+ * Copy of the simulation state needed to draw one frame: the traffic light
+ * state and the lane and position of every vehicle.
+ * 
+ * <p>Snapshots are filled by the simulation and handed to the renderer
+ * through a {@link TripleBuffer}. They expose no mutators, so once published
+ * a snapshot does not change while the renderer holds it.
+ * 
+ * @author PC-DELL
+ */
+public final class FrameSnapshot {
+    private static final int INITIAL_CAPACITY = 64;
+    
+    private long frameNumber;
+    private long timeNanos;
+    private int lightState = 1;
+    private int vehicleCount;
+    private int[] lanes = new int[INITIAL_CAPACITY];
+    private float[] positions = new float[INITIAL_CAPACITY];
+    
+    /**
+     * Overwrites this snapshot with the current state of every vehicle in the
+     * table. Must run on the thread that steps the table.
+     * 
+     * @param table the vehicle table
+     * @param lightState the current traffic light state
+     * @param frameNumber the number of this frame
+     * @param timeNanos the System.nanoTime at which the frame was taken
+     */
+    void capture(VehicleTable table, int lightState, long frameNumber, long timeNanos) {
+        int rows = table.getHighWaterMark();
+        if (rows > lanes.length) {
+            int capacity = Math.max(rows, lanes.length * 2);
+            lanes = Arrays.copyOf(lanes, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+        }
+        int[] state = table.stateColumn();
+        int[] lane = table.laneColumn();
+        float[] position = table.positionColumn();
+        int count = 0;
+        for (int row = 0; row < rows; row++) {
+            if (state[row] != VehicleTable.STATE_FREE) {
+                lanes[count] = lane[row];
+                positions[count] = position[row];
+                count++;
+            }
+        }
+        this.vehicleCount = count;
+        this.lightState = lightState;
+        this.frameNumber = frameNumber;
+        this.timeNanos = timeNanos;
+    }
+    
+    /**
+     * Gets the sequence number of this frame. The first published frame is 1.
+     * 
+     * @return the frame number, or 0 if nothing was captured yet
+     */
+    public long getFrameNumber() {
+        return frameNumber;
+    }
+    
+    /**
+     * Gets the time at which this frame was captured.
+     * 
+     * @return the System.nanoTime of the capture
+     */
+    public long getTimeNanos() {
+        return timeNanos;
+    }
+    
+    /**
+     * Gets the traffic light state of this frame.
+     * 
+     * @return 1 for vertical green, 2 for horizontal green
+     */
+    public int getLightState() {
+        return lightState;
+    }
+    
+    /**
+     * Gets the number of vehicles in this frame.
+     * 
+     * @return the vehicle count
+     */
+    public int getVehicleCount() {
+        return vehicleCount;
+    }
+    
+    /**
+     * Gets the lane id of a vehicle in this frame.
+     * 
+     * @param index the vehicle index, from 0 to getVehicleCount()-1
+     * @return the lane id
+     */
+    public int getLane(int index) {
+        return lanes[index];
+    }
+    
+    /**
+     * Gets the position along its lane of a vehicle in this frame.
+     * 
+     * @param index the vehicle index, from 0 to getVehicleCount()-1
+     * @return the position along the lane, in pixels
+     */
+    public float getPosition(int index) {
+        return positions[index];
+    }
+}
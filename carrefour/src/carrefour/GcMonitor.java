@@ -0,0 +1,188 @@
+package carrefour;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Collects garbage collection pauses and an estimate of the allocated bytes
+ * from the collectors' JMX notifications, for as long as it is open.
+ * 
+ * <p>Allocation is derived from heap occupancy: everything the heap gained
+ * between the end of one collection and the start of the next was allocated
+ * in between. Collections named as concurrent cycles (G1 Concurrent GC, ZGC
+ * and Shenandoah cycles, CMS) are counted separately from pauses, since most
+ * of their time does not stop the application.
+ * 
+ * @author PC-DELL
+ */
+public class GcMonitor implements NotificationListener, AutoCloseable {
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private final Set<String> heapPoolNames = new HashSet<>();
+    private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+    
+    private long heapUsedAfterLastGc;
+    private long allocatedBytes;
+    private long pauseCount;
+    private long pauseTotalMs;
+    private long pauseMaxMs;
+    private long concurrentCount;
+    private long concurrentTotalMs;
+    
+    /**
+     * Starts listening to every garbage collector of this JVM.
+     */
+    public GcMonitor() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool);
+                heapPoolNames.add(pool.getName());
+            }
+        }
+        heapUsedAfterLastGc = currentHeapUsed();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter) {
+                NotificationEmitter emitter = (NotificationEmitter) collector;
+                emitter.addNotificationListener(this, null, null);
+                emitters.add(emitter);
+            }
+        }
+    }
+    
+    @Override
+    public synchronized void handleNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info =
+            GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        GcInfo gcInfo = info.getGcInfo();
+        long usedBefore = heapUsed(gcInfo.getMemoryUsageBeforeGc());
+        allocatedBytes += Math.max(0, usedBefore - heapUsedAfterLastGc);
+        heapUsedAfterLastGc = heapUsed(gcInfo.getMemoryUsageAfterGc());
+        
+        long durationMs = gcInfo.getDuration();
+        if (isConcurrentCycle(info.getGcName())) {
+            concurrentCount++;
+            concurrentTotalMs += durationMs;
+        } else {
+            pauseCount++;
+            pauseTotalMs += durationMs;
+            pauseMaxMs = Math.max(pauseMaxMs, durationMs);
+        }
+    }
+    
+    /**
+     * Gets the estimated number of bytes allocated since the monitor
+     * started.
+     * 
+     * @return allocated bytes
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes + Math.max(0, currentHeapUsed() - heapUsedAfterLastGc);
+    }
+    
+    /**
+     * Gets the number of stop-the-world collections.
+     * 
+     * @return the pause count
+     */
+    public synchronized long getPauseCount() {
+        return pauseCount;
+    }
+    
+    /**
+     * Gets the summed duration of stop-the-world collections.
+     * 
+     * @return total pause time in milliseconds
+     */
+    public synchronized long getPauseTotalMs() {
+        return pauseTotalMs;
+    }
+    
+    /**
+     * Gets the longest stop-the-world collection.
+     * 
+     * @return maximum pause time in milliseconds
+     */
+    public synchronized long getPauseMaxMs() {
+        return pauseMaxMs;
+    }
+    
+    /**
+     * Gets the number of concurrent collection cycles.
+     * 
+     * @return the concurrent cycle count
+     */
+    public synchronized long getConcurrentCount() {
+        return concurrentCount;
+    }
+    
+    /**
+     * Gets the summed duration of concurrent collection cycles.
+     * 
+     * @return total concurrent time in milliseconds
+     */
+    public synchronized long getConcurrentTotalMs() {
+        return concurrentTotalMs;
+    }
+    
+    @Override
+    public void close() {
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(this);
+            } catch (ListenerNotFoundException ex) {
+                // Already removed
+            }
+        }
+        emitters.clear();
+    }
+    
+    /**
+     * Sums the heap pools of a per-pool usage map.
+     */
+    private long heapUsed(Map<String, MemoryUsage> usageByPool) {
+        long used = 0;
+        for (Map.Entry<String, MemoryUsage> entry : usageByPool.entrySet()) {
+            if (heapPoolNames.contains(entry.getKey())) {
+                used += entry.getValue().getUsed();
+            }
+        }
+        return used;
+    }
+    
+    /**
+     * Sums the current usage of the heap pools.
+     */
+    private long currentHeapUsed() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            used += pool.getUsage().getUsed();
+        }
+        return used;
+    }
+    
+    /**
+     * Tells concurrent collector cycles from pauses by collector name.
+     */
+    private static boolean isConcurrentCycle(String gcName) {
+        String name = gcName.toLowerCase(Locale.ROOT);
+        return name.contains("concurrent") || name.contains("cycles");
+    }
+}
@@ -0,0 +1,309 @@
+package carrefour;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Soak and load-test runner for servers without a display. It drives the
+ * real {@link Semaphore}, {@link Vehicle}, {@link TrafficLightCycle} and
+ * {@link StatisticsTracker} stack with real threads, but loads no AWT or
+ * Swing classes, and prints throughput, wait-time, thread and GC figures
+ * when the run ends.
+ * 
+ * <p>Usage: {@code HeadlessRunner [--vehicles N] [--rate P] [--vertical P]
+ * [--horizontal P] [--process poisson|deterministic] [--seed X] [--green MS]
+ * [--duration S]}, where N is the number of vehicles per direction (0 for no
+ * limit), P a {@link DemandProfile} in arrivals per second ({@code --rate}
+ * sets both directions), MS the green time of fixed-time control and S the
+ * run length in seconds. Vehicles are created only as they arrive. The signal
+ * control strategy, platoon admission, vehicle launcher, metrics endpoint,
+ * metrics file and event log are configured with the same system properties
+ * as the GUI.
+ * 
+ * @author PC-DELL
+ */
+public class HeadlessRunner {
+    private static final int DEFAULT_VEHICLES = 0;
+    private static final String DEFAULT_PROFILE = String.valueOf(1000.0 / 600); // The GUI default
+    private static final long DEFAULT_GREEN_MS = 2000;
+    private static final long DEFAULT_DURATION_S = 60;
+    private static final long RETIRE_INTERVAL_MS = 100;
+    private static final long QUEUE_SAMPLE_INTERVAL_MS = 100;
+    private static final long RECENT_WINDOW_MS = 10_000;
+    private static final String USAGE = "Usage: HeadlessRunner [--vehicles N] [--rate P] [--vertical P]"
+        + " [--horizontal P] [--process poisson|deterministic] [--seed X] [--green MS] [--duration S]";
+    
+    private final ArrivalGenerator verticalArrivals;
+    private final ArrivalGenerator horizontalArrivals;
+    private final SignalControlStrategy signalStrategy;
+    private final PlatoonAdmission platoonAdmission;
+    private final long durationMs;
+    
+    private final Semaphore lane1 = new Semaphore(1, "lane1");
+    private final Semaphore lane2 = new Semaphore(1, "lane2");
+    private final Semaphore trafficLight1 = new Semaphore(1, "trafficLight1"); // Initially green
+    private final Semaphore trafficLight2 = new Semaphore(0, "trafficLight2"); // Initially red
+    private final StatisticsTracker statisticsTracker = new StatisticsTracker();
+    private final VehiclePool vehiclePool;
+    private final TrafficLightCycle lightCycle;
+    
+    // Vehicles on their trip, in arrival order; arrival scheduler thread only
+    private final List<Vehicle> verticalInFlight = new ArrayList<>();
+    private final List<Vehicle> horizontalInFlight = new ArrayList<>();
+    private long verticalArrived;
+    private long horizontalArrived;
+    private long recycled;
+    
+    /**
+     * Creates a new runner.
+     * 
+     * @param verticalArrivals arrivals of the vertical approach
+     * @param horizontalArrivals arrivals of the horizontal approach
+     * @param signalStrategy decides when each green ends
+     * @param platoonAdmission platoon admission settings (null to admit one vehicle at a time)
+     * @param durationMs length of the run in milliseconds
+     * @throws IllegalArgumentException if a value is out of range
+     */
+    public HeadlessRunner(ArrivalGenerator verticalArrivals, ArrivalGenerator horizontalArrivals,
+                          SignalControlStrategy signalStrategy, PlatoonAdmission platoonAdmission,
+                          long durationMs) {
+        if (durationMs <= 0) {
+            throw new IllegalArgumentException("Duration must be positive");
+        }
+        this.verticalArrivals = verticalArrivals;
+        this.horizontalArrivals = horizontalArrivals;
+        this.signalStrategy = signalStrategy;
+        this.platoonAdmission = platoonAdmission;
+        this.durationMs = durationMs;
+        this.vehiclePool = new VehiclePool(lane1, trafficLight1, lane2, trafficLight2, null, statisticsTracker,
+                                           platoonAdmission);
+        this.lightCycle = new TrafficLightCycle(trafficLight1, trafficLight2, lane1, lane2, signalStrategy,
+                                                statisticsTracker, platoonAdmission);
+    }
+    
+    /**
+     * Creates a runner from command line options.
+     * 
+     * @param args the options, see the class description
+     * @return the runner
+     * @throws IllegalArgumentException if an option is unknown or invalid
+     */
+    public static HeadlessRunner fromArguments(String[] args) {
+        int vehicles = DEFAULT_VEHICLES;
+        String verticalProfile = DEFAULT_PROFILE;
+        String horizontalProfile = DEFAULT_PROFILE;
+        ArrivalGenerator.ArrivalProcess process = ArrivalGenerator.ArrivalProcess.DETERMINISTIC;
+        long seed = System.nanoTime();
+        long greenMs = DEFAULT_GREEN_MS;
+        double durationSeconds = DEFAULT_DURATION_S;
+        for (int i = 0; i < args.length; i += 2) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[i + 1];
+            try {
+                switch (option) {
+                    case "--vehicles":
+                        vehicles = Integer.parseInt(value);
+                        break;
+                    case "--rate":
+                        verticalProfile = value;
+                        horizontalProfile = value;
+                        break;
+                    case "--vertical":
+                        verticalProfile = value;
+                        break;
+                    case "--horizontal":
+                        horizontalProfile = value;
+                        break;
+                    case "--process":
+                        process = ArrivalGenerator.ArrivalProcess.valueOf(value.toUpperCase(Locale.ROOT));
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "--green":
+                        greenMs = Long.parseLong(value);
+                        break;
+                    case "--duration":
+                        durationSeconds = Double.parseDouble(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + option);
+                }
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid value for " + option + ": " + value, ex);
+            }
+        }
+        // Independent streams per approach, reproducible for a given seed
+        ArrivalGenerator vertical = new ArrivalGenerator(DemandProfile.parse(verticalProfile), process,
+                                                         vehicles, seed);
+        ArrivalGenerator horizontal = new ArrivalGenerator(DemandProfile.parse(horizontalProfile), process,
+                                                           vehicles, ~seed);
+        return new HeadlessRunner(vertical, horizontal, SignalControlStrategy.fromSystemProperties(greenMs),
+                                  PlatoonAdmission.fromSystemProperties(), (long) (durationSeconds * 1000));
+    }
+    
+    /**
+     * Runs the simulation for the configured duration, then prints the
+     * report.
+     * 
+     * @param out where the report is printed
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public void run(PrintStream out) throws InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        VehicleLauncher vehicleLauncher = VehicleLauncher.fromSystemProperties();
+        MetricsHttpServer.startFromSystemProperties(statisticsTracker, lightCycle::getCurrentLightState,
+                                                    lane1, lane2, trafficLight1, trafficLight2);
+        MappedMetricsFile.startFromSystemProperties(statisticsTracker, lightCycle::getCurrentLightState);
+        
+        try (GcMonitor gcMonitor = new GcMonitor()) {
+            Thread cycleThread = new Thread(lightCycle, "TrafficLightCycle");
+            cycleThread.setDaemon(true);
+            ScheduledExecutorService arrivalScheduler = ArrivalGenerator.newArrivalScheduler();
+            long startNanos = System.nanoTime();
+            cycleThread.start();
+            verticalArrivals.start(arrivalScheduler, () -> arrive(true, vehicleLauncher));
+            horizontalArrivals.start(arrivalScheduler, () -> arrive(false, vehicleLauncher));
+            arrivalScheduler.scheduleWithFixedDelay(this::retireFinishedVehicles, RETIRE_INTERVAL_MS,
+                                                    RETIRE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            arrivalScheduler.scheduleWithFixedDelay(statisticsTracker::sampleQueueLengths, 0,
+                                                    QUEUE_SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            
+            Thread.sleep(durationMs);
+            verticalArrivals.stop();
+            horizontalArrivals.stop();
+            arrivalScheduler.shutdownNow();
+            arrivalScheduler.awaitTermination(1, TimeUnit.SECONDS);
+            long elapsedNanos = System.nanoTime() - startNanos;
+            cycleThread.interrupt();
+            vehicleLauncher.shutdown();
+            retireFinishedVehicles(); // The scheduler has stopped, so this thread owns the lists now
+            printReport(out, elapsedNanos, vehicleLauncher.getMode(), threads, gcMonitor);
+        }
+    }
+    
+    /**
+     * Materialises and launches the vehicle of one arrival.
+     */
+    private void arrive(boolean isVertical, VehicleLauncher vehicleLauncher) {
+        Vehicle vehicle = vehiclePool.obtain(isVertical);
+        if (isVertical) {
+            verticalInFlight.add(vehicle);
+            vehicleLauncher.launch(vehicle, "VerticalVehicle-" + verticalArrived++);
+        } else {
+            horizontalInFlight.add(vehicle);
+            vehicleLauncher.launch(vehicle, "HorizontalVehicle-" + horizontalArrived++);
+        }
+    }
+    
+    /**
+     * Hands every finished vehicle back to the pool.
+     */
+    private void retireFinishedVehicles() {
+        retireFinished(verticalInFlight, true);
+        retireFinished(horizontalInFlight, false);
+    }
+    
+    /**
+     * Hands the finished vehicles of one direction back to the pool.
+     */
+    private void retireFinished(List<Vehicle> inFlight, boolean isVertical) {
+        for (Iterator<Vehicle> it = inFlight.iterator(); it.hasNext();) {
+            Vehicle vehicle = it.next();
+            if (vehicle.isFinished()) {
+                it.remove();
+                vehiclePool.recycle(vehicle, isVertical);
+                recycled++;
+            }
+        }
+    }
+    
+    /**
+     * Prints the end-of-run report.
+     */
+    private void printReport(PrintStream out, long elapsedNanos, VehicleLauncher.Mode mode,
+                             ThreadMXBean threads, GcMonitor gcMonitor) {
+        double elapsedSeconds = elapsedNanos / 1e9;
+        StatisticsSnapshot snapshot = statisticsTracker.snapshot();
+        out.printf("Headless run: %.1f s, %s launcher, %s arrivals, %s signal control%n",
+                   elapsedSeconds, mode, verticalArrivals.getProcess(), signalStrategy);
+        out.printf("Demand (vehicles/s): vertical %s, horizontal %s%n",
+                   verticalArrivals.getProfile(), horizontalArrivals.getProfile());
+        out.printf("Vehicles: arrived %d, crossed %d, gave up %d, in flight %d, recycled %d, created %d%n",
+                   verticalArrived + horizontalArrived,
+                   snapshot.getTotalVehiclesCrossed(),
+                   snapshot.getVerticalVehiclesGaveUp() + snapshot.getHorizontalVehiclesGaveUp(),
+                   verticalInFlight.size() + horizontalInFlight.size(), recycled,
+                   vehiclePool.getCreatedCount());
+        long recentWindowMs = Math.min(RECENT_WINDOW_MS, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        out.printf("Throughput: %.2f crossings/s overall, %.2f crossings/s over the last %.1f s%n",
+                   snapshot.getTotalVehiclesCrossed() / elapsedSeconds,
+                   statisticsTracker.getCrossingsPerSecond(recentWindowMs), recentWindowMs / 1000.0);
+        WaitTimeHistogram waitTimes = statisticsTracker.getOverallWaitTimeHistogram();
+        out.printf("Wait: p50 %d, p90 %d, p99 %d, p99.9 %d, max %d ms (mean %.1f ms)%n",
+                   waitTimes.getP50(), waitTimes.getP90(), waitTimes.getP99(), waitTimes.getP999(),
+                   waitTimes.getMax(), waitTimes.getMean());
+        for (VehicleStage stage : VehicleStage.values()) {
+            WaitTimeHistogram histogram = statisticsTracker.getStageLatencyHistogram(stage);
+            out.printf("Stage %s: p50 %.1f, p99 %.1f, max %.1f ms%n", stage,
+                       histogram.getP50() / 1000.0, histogram.getP99() / 1000.0, histogram.getMax() / 1000.0);
+        }
+        long switches = lightCycle.getSwitchCount();
+        out.printf("Light switches: %d, %.1f crossings per green, admission %s%n", switches,
+                   snapshot.getTotalVehiclesCrossed() / (double) (switches + 1),
+                   platoonAdmission != null ? platoonAdmission : "single");
+        if (signalStrategy instanceof AdaptiveSignalStrategy) {
+            AdaptiveSignalStrategy adaptive = (AdaptiveSignalStrategy) signalStrategy;
+            out.printf("Gap-outs: %d, max-outs: %d%n", adaptive.getGapOutCount(), adaptive.getMaxOutCount());
+        }
+        out.printf("Threads: peak %d, live at end %d (virtual threads are not counted)%n",
+                   threads.getPeakThreadCount(), threads.getThreadCount());
+        double allocatedMb = gcMonitor.getAllocatedBytes() / (1024.0 * 1024.0);
+        out.printf("Allocation: %.1f MB, %.2f MB/s (estimated from heap occupancy)%n",
+                   allocatedMb, allocatedMb / elapsedSeconds);
+        out.printf("GC pauses: %d, total %d ms, max %d ms; concurrent cycles: %d, total %d ms%n",
+                   gcMonitor.getPauseCount(), gcMonitor.getPauseTotalMs(), gcMonitor.getPauseMaxMs(),
+                   gcMonitor.getConcurrentCount(), gcMonitor.getConcurrentTotalMs());
+        out.printf("Event log records dropped: %d%n", EventLog.getDroppedCount());
+    }
+    
+    /**
+     * Runs the simulation headless and prints the report.
+     * 
+     * @param args the options, see the class description
+     */
+    public static void main(String[] args) {
+        if (System.getProperty("java.awt.headless") == null) {
+            System.setProperty("java.awt.headless", "true");
+        }
+        HeadlessRunner runner;
+        try {
+            runner = fromArguments(args);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        try {
+            runner.run(System.out);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted");
+        }
+        EventLog.close();
+        // Vehicles still queued at the lights would keep the JVM alive
+        System.exit(0);
+    }
+}
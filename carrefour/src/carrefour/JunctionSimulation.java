@@ -0,0 +1,876 @@
+package carrefour;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Discrete-event simulation of a four-leg junction with several lanes per
+ * approach and left, through and right movements, on a virtual millisecond
+ * clock like {@link DiscreteEventSimulation}.
+ * 
+ * <p>Each approach has its own {@link ArrivalGenerator}. An arriving vehicle
+ * picks its turn from the turn shares and joins the shortest lane that serves
+ * it. With one lane per approach the lane is shared by all turns; with two
+ * the left lane also carries through traffic and the right lane right turns;
+ * with three or more there is a left lane, a right lane and through lanes in
+ * between. A lane is a FIFO queue: only its first vehicle can be at the stop
+ * line, and it holds the stop line until it has crossed, so a vehicle waiting
+ * for its own movement blocks the others behind it.
+ * 
+ * <p>Two kinds of control are compared:
+ * <ul>
+ * <li>{@link Control#TWO_PHASE} is the existing model: the north-south and
+ *     east-west axes take turns, and each axis admits one vehicle at a time
+ *     through a single light permit, whatever its movement;</li>
+ * <li>{@link Control#CONFLICT_MATRIX} gives every movement its own
+ *     admission. A {@link PhaseScheduler} picks a set of mutually compatible
+ *     movements and all their lanes discharge at the same time. When the
+ *     phase changes, the movements leaving it stop at once, and each new
+ *     movement opens after the clearance interval, once no conflicting
+ *     vehicle is still crossing. A phase is actuated like
+ *     {@link AdaptiveSignalStrategy}: it lasts at least the minimum green,
+ *     gaps out once none of its movements has had a vehicle waiting for the
+ *     gap time while another movement has one, and ends at the maximum green
+ *     (the green time) at the latest. With nobody waiting elsewhere it rests
+ *     in green.</li>
+ * </ul>
+ * 
+ * @author PC-DELL
+ */
+public class JunctionSimulation {
+    /**
+     * How the junction admits vehicles.
+     */
+    public enum Control {
+        /** Alternating axes with one light permit each, as in {@link TrafficLightCycle}. */
+        TWO_PHASE,
+        /** Per-movement admission of every compatible movement at once. */
+        CONFLICT_MATRIX
+    }
+    
+    private static final int ARRIVAL = 0;
+    private static final int CROSSING_DONE = 1;
+    private static final int PHASE_END = 2;
+    private static final int CONTROLLER_ACQUIRED = 3;
+    private static final int HEAD_READY = 4;
+    private static final int LIGHT_ACQUIRED = 5;
+    private static final int GAP_CHECK = 6;
+    private static final int CLEARANCE_END = 7;
+    
+    private static final int DEFAULT_LANES = 3;
+    private static final String DEFAULT_TURN_SHARES = "0.2,0.6,0.2";
+    private static final long DEFAULT_GREEN_MS = 2000;
+    private static final long DEFAULT_MIN_GREEN_MS = AdaptiveSignalStrategy.DEFAULT_MIN_GREEN_MS;
+    private static final long DEFAULT_GAP_MS = AdaptiveSignalStrategy.DEFAULT_GAP_MS;
+    private static final long DEFAULT_CLEARANCE_MS = 100; // One crossing time, as in PlatoonAdmission
+    private static final long NOT_IDLE = Long.MAX_VALUE;
+    private static final long DEFAULT_CROSSING_TIME_MS = 100;
+    private static final double DEFAULT_ARRIVAL_RATE = 1000.0 / 600; // Per approach, as in the GUI
+    private static final String SEED_PROPERTY = "carrefour.arrivals.seed";
+    
+    private static final Movement[] MOVEMENTS = Movement.values();
+    private static final Movement.Approach[] APPROACHES = Movement.Approach.values();
+    private static final Movement.Turn[] TURNS = Movement.Turn.values();
+    
+    private final Control control;
+    private final int lanesPerApproach;
+    private final ArrivalGenerator[] arrivals;
+    private final double[] cumulativeTurnShares;
+    private final Random turnRandom;
+    private final long greenMs;
+    private final long minGreenMs;
+    private final long gapMs;
+    private final long clearanceMs;
+    private final long crossingTimeMs;
+    private final PhaseScheduler scheduler;
+    
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private final ArrayDeque<Event> eventPool = new ArrayDeque<>();
+    private final ArrayDeque<Car> carPool = new ArrayDeque<>();
+    private final Lane[] lanes;
+    private final int[] queueLengths = new int[MOVEMENTS.length]; // Arrived but not yet admitted
+    private final int[] crossing = new int[MOVEMENTS.length]; // Admitted but not yet crossed
+    private final long[] headArrivalMs = new long[MOVEMENTS.length]; // Scratch for the scheduler
+    private final WaitTimeHistogram waitTimes = new WaitTimeHistogram();
+    private final WaitTimeHistogram[] turnWaitTimes = new WaitTimeHistogram[TURNS.length];
+    
+    // Two-phase control: light permits of the north-south and east-west axes
+    private final AxisLight northSouthLight = new AxisLight(1);
+    private final AxisLight eastWestLight = new AxisLight(0);
+    private final Lane controller = new Lane(0); // Queues for a light permit like a lane head
+    private boolean northSouthGreen = true;
+    
+    // Conflict-matrix control
+    private long greenPhase; // Movements admitting vehicles
+    private long pendingPhase; // Movements waiting for conflicting vehicles to clear
+    private Event phaseEndEvent; // Unscheduled while the next phase is opening
+    private Event gapCheckEvent;
+    private Event clearanceEndEvent;
+    private boolean phaseTimed; // The phase is open and its end is scheduled
+    private boolean gappedOut; // The scheduled phase end was brought forward
+    private boolean gapCheckScheduled;
+    private long phaseStartMs; // When every movement of the phase was open
+    private long greenIdleSinceMs = NOT_IDLE; // Since when no green movement has had a vehicle waiting
+    private long clearanceEndMs; // Before it, pending movements stay closed
+    
+    private long now;
+    private long sequence;
+    private long processedEvents;
+    private long crossed;
+    private long phaseChanges;
+    private long gapOuts;
+    
+    /**
+     * A scheduled event. Events at the same time run in scheduling order.
+     */
+    private static final class Event implements Comparable<Event> {
+        long time;
+        long sequence;
+        int type;
+        int approach;
+        Car car;
+        
+        @Override
+        public int compareTo(Event other) {
+            if (time != other.time) {
+                return Long.compare(time, other.time);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+    
+    /**
+     * A vehicle on its way through the junction.
+     */
+    private static final class Car {
+        Movement movement;
+        Lane lane;
+        long arrivalMs;
+    }
+    
+    /**
+     * A lane of one approach and the turns it serves.
+     */
+    private static final class Lane {
+        final int turnMask; // Bits over Turn ordinals
+        final ArrayDeque<Car> queue = new ArrayDeque<>();
+        boolean headCrossing;
+        
+        Lane(int turnMask) {
+            this.turnMask = turnMask;
+        }
+    }
+    
+    /**
+     * Light permit of one axis in two-phase control, granted to waiting lane
+     * heads and to the controller in FIFO order like {@link Semaphore}.
+     */
+    private final class AxisLight {
+        private int count;
+        private final ArrayDeque<Lane> waiters = new ArrayDeque<>();
+        
+        AxisLight(int initialCount) {
+            this.count = initialCount;
+        }
+        
+        void acquire(Lane lane) {
+            if (count > 0 && waiters.isEmpty()) {
+                count--;
+                granted(lane);
+            } else {
+                waiters.add(lane);
+            }
+        }
+        
+        void release() {
+            Lane next = waiters.poll();
+            if (next != null) {
+                granted(next);
+            } else {
+                count++;
+            }
+        }
+        
+        private void granted(Lane lane) {
+            if (lane == controller) {
+                schedule(newEvent(CONTROLLER_ACQUIRED), now);
+            } else {
+                Event acquired = newEvent(LIGHT_ACQUIRED);
+                acquired.car = lane.queue.peek();
+                schedule(acquired, now);
+            }
+        }
+    }
+    
+    /**
+     * Creates a junction simulation. The generators must be fresh: their
+     * time 0 is the start of the simulation.
+     * 
+     * @param control how vehicles are admitted
+     * @param lanesPerApproach number of lanes on each approach
+     * @param arrivals arrivals of each approach, indexed by {@link Movement.Approach} ordinal
+     * @param turnShares relative shares of left, through and right turns
+     * @param turnSeed seed of the turn choices, for reproducible runs
+     * @param greenMs virtual time between two axis switches, or the maximum
+     *                green of a phase under conflict-matrix control
+     * @param minGreenMs shortest green of a conflict-matrix phase
+     * @param gapMs how long the movements of a conflict-matrix phase must
+     *              have had nobody waiting before the phase gaps out
+     * @param clearanceMs time between a phase change and the opening of the
+     *                    new movements under conflict-matrix control
+     * @param crossingTimeMs virtual time a vehicle needs to cross
+     * @throws IllegalArgumentException if a value is out of range
+     */
+    public JunctionSimulation(Control control, int lanesPerApproach, ArrivalGenerator[] arrivals,
+                              double[] turnShares, long turnSeed, long greenMs, long minGreenMs,
+                              long gapMs, long clearanceMs, long crossingTimeMs) {
+        if (lanesPerApproach < 1) {
+            throw new IllegalArgumentException("Need at least one lane per approach");
+        }
+        if (arrivals.length != APPROACHES.length || turnShares.length != TURNS.length) {
+            throw new IllegalArgumentException("Need one arrival generator per approach and one share per turn");
+        }
+        if (greenMs <= 0 || crossingTimeMs <= 0) {
+            throw new IllegalArgumentException("Intervals must be positive");
+        }
+        if (minGreenMs <= 0 || minGreenMs > greenMs) {
+            throw new IllegalArgumentException("Need 0 < minimum green <= green");
+        }
+        if (gapMs < 0 || clearanceMs < 0) {
+            throw new IllegalArgumentException("Gap and clearance must be non-negative");
+        }
+        this.control = control;
+        this.lanesPerApproach = lanesPerApproach;
+        this.arrivals = arrivals.clone();
+        this.cumulativeTurnShares = cumulativeShares(turnShares);
+        this.turnRandom = new Random(turnSeed);
+        this.greenMs = greenMs;
+        this.minGreenMs = minGreenMs;
+        this.gapMs = gapMs;
+        this.clearanceMs = clearanceMs;
+        this.crossingTimeMs = crossingTimeMs;
+        this.scheduler = new PhaseScheduler(ConflictMatrix.standard());
+        this.lanes = new Lane[APPROACHES.length * lanesPerApproach];
+        for (int approach = 0; approach < APPROACHES.length; approach++) {
+            for (int lane = 0; lane < lanesPerApproach; lane++) {
+                lanes[approach * lanesPerApproach + lane] = new Lane(laneTurns(lane, lanesPerApproach));
+            }
+        }
+        for (int turn = 0; turn < TURNS.length; turn++) {
+            turnWaitTimes[turn] = new WaitTimeHistogram();
+        }
+        
+        for (int approach = 0; approach < APPROACHES.length; approach++) {
+            Event arrival = newEvent(ARRIVAL);
+            arrival.approach = approach;
+            scheduleArrival(arrival);
+        }
+        Event phaseEnd = newEvent(PHASE_END);
+        schedule(phaseEnd, greenMs);
+        if (control == Control.CONFLICT_MATRIX) {
+            greenPhase = scheduler.nextPhase(0, queueLengths, headArrivals());
+            phaseEndEvent = phaseEnd;
+            gapCheckEvent = newEvent(GAP_CHECK);
+            clearanceEndEvent = newEvent(CLEARANCE_END);
+            phaseTimed = true;
+            greenIdleSinceMs = 0;
+        }
+    }
+    
+    /**
+     * Normalises the turn shares into cumulative probabilities.
+     * 
+     * @throws IllegalArgumentException if a share is negative or all are 0
+     */
+    private static double[] cumulativeShares(double[] shares) {
+        double total = 0;
+        for (double share : shares) {
+            if (share < 0) {
+                throw new IllegalArgumentException("Turn shares must be non-negative");
+            }
+            total += share;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("At least one turn share must be positive");
+        }
+        double[] cumulative = new double[shares.length];
+        double sum = 0;
+        for (int i = 0; i < shares.length; i++) {
+            sum += shares[i];
+            cumulative[i] = sum / total;
+        }
+        return cumulative;
+    }
+    
+    /**
+     * Gets the turns served by one lane of an approach, as a mask over
+     * Turn ordinals. Lanes are numbered from the left.
+     */
+    private static int laneTurns(int lane, int lanesPerApproach) {
+        int left = 1 << Movement.Turn.LEFT.ordinal();
+        int through = 1 << Movement.Turn.THROUGH.ordinal();
+        int right = 1 << Movement.Turn.RIGHT.ordinal();
+        if (lanesPerApproach == 1) {
+            return left | through | right;
+        }
+        if (lanesPerApproach == 2) {
+            return lane == 0 ? left | through : through | right;
+        }
+        if (lane == 0) {
+            return left;
+        }
+        return lane == lanesPerApproach - 1 ? right : through;
+    }
+    
+    /**
+     * Runs the simulation until the virtual clock reaches the given time.
+     * 
+     * @param endTimeMs the virtual time to stop at, in milliseconds
+     */
+    public void runUntil(long endTimeMs) {
+        while (!events.isEmpty() && events.peek().time <= endTimeMs) {
+            Event event = events.poll();
+            now = event.time;
+            processedEvents++;
+            handle(event);
+        }
+        now = Math.max(now, endTimeMs);
+    }
+    
+    /**
+     * Dispatches one event.
+     */
+    private void handle(Event event) {
+        switch (event.type) {
+            case ARRIVAL:
+                arrive(event.approach);
+                scheduleArrival(event);
+                break;
+            case HEAD_READY:
+                Car head = event.car;
+                event.car = null;
+                eventPool.add(event);
+                headReady(head.lane);
+                break;
+            case LIGHT_ACQUIRED:
+                Car admitted = event.car;
+                event.car = null;
+                eventPool.add(event);
+                admit(admitted.lane);
+                break;
+            case CROSSING_DONE:
+                Car car = event.car;
+                event.car = null;
+                eventPool.add(event);
+                crossingDone(car);
+                break;
+            case PHASE_END:
+                if (control == Control.TWO_PHASE) {
+                    eventPool.add(event);
+                    switchAxes();
+                } else {
+                    phaseTimed = false;
+                    choosePhase();
+                }
+                break;
+            case GAP_CHECK:
+                gapCheckScheduled = false;
+                checkGapOut();
+                break;
+            case CLEARANCE_END:
+                if (pendingPhase != 0) {
+                    openClearedMovements();
+                }
+                break;
+            case CONTROLLER_ACQUIRED:
+                // The controller now holds the old green permit
+                if (northSouthGreen) {
+                    eastWestLight.release();
+                    northSouthGreen = false;
+                } else {
+                    northSouthGreen = true;
+                }
+                phaseChanges++;
+                event.type = PHASE_END;
+                schedule(event, now + greenMs);
+                break;
+            default:
+                throw new IllegalStateException("Unknown event type " + event.type);
+        }
+    }
+    
+    /**
+     * Creates a vehicle on an approach and queues it in the shortest lane
+     * serving its turn.
+     */
+    private void arrive(int approach) {
+        double draw = turnRandom.nextDouble();
+        int turn = 0;
+        while (turn < TURNS.length - 1 && draw >= cumulativeTurnShares[turn]) {
+            turn++;
+        }
+        Lane chosen = null;
+        for (int i = 0; i < lanesPerApproach; i++) {
+            Lane lane = lanes[approach * lanesPerApproach + i];
+            if ((lane.turnMask & (1 << turn)) != 0
+                && (chosen == null || lane.queue.size() < chosen.queue.size())) {
+                chosen = lane;
+            }
+        }
+        Car car = carPool.poll();
+        if (car == null) {
+            car = new Car();
+        }
+        car.movement = Movement.of(APPROACHES[approach], TURNS[turn]);
+        car.lane = chosen;
+        car.arrivalMs = now;
+        queueLengths[car.movement.ordinal()]++;
+        chosen.queue.add(car);
+        if (chosen.queue.size() == 1) {
+            scheduleHeadReady(car);
+        }
+        if (control == Control.CONFLICT_MATRIX) {
+            greenDemandChanged();
+        }
+    }
+    
+    /**
+     * Moves a vehicle up to its stop line. Like a permit handed over by a
+     * {@link Semaphore}, this takes effect after the events already due now.
+     */
+    private void scheduleHeadReady(Car car) {
+        Event ready = newEvent(HEAD_READY);
+        ready.car = car;
+        schedule(ready, now);
+    }
+    
+    /**
+     * Lets the first vehicle of a lane ask for admission at the stop line.
+     */
+    private void headReady(Lane lane) {
+        Movement movement = lane.queue.peek().movement;
+        if (control == Control.TWO_PHASE) {
+            (movement.isNorthSouth() ? northSouthLight : eastWestLight).acquire(lane);
+        } else if ((greenPhase & movement.mask()) != 0 && !lane.headCrossing) {
+            // The head may have been admitted already when its movement opened
+            admit(lane);
+        }
+    }
+    
+    /**
+     * Lets the first vehicle of a lane enter the junction.
+     */
+    private void admit(Lane lane) {
+        Car car = lane.queue.peek();
+        lane.headCrossing = true;
+        int movement = car.movement.ordinal();
+        queueLengths[movement]--;
+        crossing[movement]++;
+        long waitMs = now - car.arrivalMs;
+        waitTimes.record(waitMs);
+        turnWaitTimes[car.movement.getTurn().ordinal()].record(waitMs);
+        Event done = newEvent(CROSSING_DONE);
+        done.car = car;
+        schedule(done, now + crossingTimeMs);
+        if (control == Control.CONFLICT_MATRIX) {
+            greenDemandChanged();
+        }
+    }
+    
+    /**
+     * Takes a vehicle that has crossed out of the junction and frees its
+     * stop line.
+     */
+    private void crossingDone(Car car) {
+        Lane lane = car.lane;
+        crossing[car.movement.ordinal()]--;
+        crossed++;
+        if (control == Control.TWO_PHASE) {
+            (car.movement.isNorthSouth() ? northSouthLight : eastWestLight).release();
+        }
+        lane.queue.poll();
+        lane.headCrossing = false;
+        car.lane = null;
+        carPool.add(car);
+        if (!lane.queue.isEmpty()) {
+            scheduleHeadReady(lane.queue.peek());
+        }
+        if (pendingPhase != 0) {
+            openClearedMovements();
+        }
+    }
+    
+    /**
+     * Mirrors TrafficLightCycle.switchLights: the controller takes the
+     * permit of the green axis (waiting for a crossing vehicle if needed) and
+     * hands a permit to the other axis.
+     */
+    private void switchAxes() {
+        if (northSouthGreen) {
+            northSouthLight.acquire(controller);
+        } else {
+            northSouthLight.release();
+            eastWestLight.acquire(controller);
+        }
+    }
+    
+    /**
+     * Asks the scheduler for the next phase. Movements leaving the phase stop
+     * at once; the new ones open after the clearance interval, as their
+     * conflicting vehicles clear. If the scheduler keeps the phase, it
+     * starts over with a new minimum and maximum green.
+     */
+    private void choosePhase() {
+        long currentPhase = greenPhase | pendingPhase;
+        long nextPhase = scheduler.nextPhase(currentPhase, queueLengths, headArrivals());
+        if (nextPhase != currentPhase) {
+            phaseChanges++;
+            if (gappedOut) {
+                gapOuts++;
+            }
+            greenPhase &= nextPhase;
+            pendingPhase = nextPhase & ~greenPhase;
+            if (pendingPhase != 0 && clearanceMs > 0) {
+                clearanceEndMs = now + clearanceMs;
+                schedule(clearanceEndEvent, clearanceEndMs);
+            }
+        }
+        gappedOut = false;
+        openClearedMovements();
+    }
+    
+    /**
+     * Notes when the green movements last ran out of waiting vehicles, and
+     * checks for a gap-out.
+     */
+    private void greenDemandChanged() {
+        if (hasDemand(greenPhase)) {
+            greenIdleSinceMs = NOT_IDLE;
+        } else if (greenIdleSinceMs == NOT_IDLE) {
+            greenIdleSinceMs = now;
+        }
+        checkGapOut();
+    }
+    
+    /**
+     * Ends the current phase now if it has run its minimum green, none of
+     * its movements has had a vehicle waiting for the gap time, and another
+     * movement has one. If the phase cannot gap out yet, a check is
+     * scheduled for when it can.
+     */
+    private void checkGapOut() {
+        if (!phaseTimed || greenIdleSinceMs == NOT_IDLE) {
+            return;
+        }
+        long gapOutMs = Math.max(phaseStartMs + minGreenMs, greenIdleSinceMs + gapMs);
+        if (gapOutMs > now) {
+            scheduleGapCheck(gapOutMs);
+            return;
+        }
+        if (!hasDemand(~greenPhase)) {
+            return; // Rest in green; the next arrival on red checks again
+        }
+        events.remove(phaseEndEvent);
+        schedule(phaseEndEvent, now);
+        phaseTimed = false;
+        gappedOut = true; // Counted only if the phase then changes
+    }
+    
+    /**
+     * Schedules a gap-out check, unless one is already due by then.
+     */
+    private void scheduleGapCheck(long time) {
+        if (gapCheckScheduled) {
+            if (gapCheckEvent.time <= time) {
+                return; // It checks again when it fires
+            }
+            events.remove(gapCheckEvent);
+        }
+        schedule(gapCheckEvent, time);
+        gapCheckScheduled = true;
+    }
+    
+    /**
+     * Checks whether any movement of a set has a vehicle queued, at its stop
+     * line or behind it.
+     */
+    private boolean hasDemand(long movements) {
+        for (Movement movement : MOVEMENTS) {
+            if ((movements & movement.mask()) != 0 && queueLengths[movement.ordinal()] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Opens every pending movement that no crossing vehicle conflicts with,
+     * once the clearance interval has passed, and starts the phase timer once
+     * all of them are open.
+     */
+    private void openClearedMovements() {
+        if (pendingPhase != 0 && now < clearanceEndMs) {
+            return; // Called again at the end of the clearance interval
+        }
+        ConflictMatrix conflictMatrix = scheduler.getConflictMatrix();
+        long opened = 0;
+        for (Movement movement : MOVEMENTS) {
+            if ((pendingPhase & movement.mask()) != 0 && !conflictsWithCrossing(conflictMatrix, movement)) {
+                opened |= movement.mask();
+            }
+        }
+        greenPhase |= opened;
+        pendingPhase &= ~opened;
+        for (Lane lane : lanes) {
+            Car head = lane.queue.peek();
+            if (head != null && !lane.headCrossing && (opened & head.movement.mask()) != 0) {
+                admit(lane);
+            }
+        }
+        if (pendingPhase == 0) {
+            phaseStartMs = now;
+            schedule(phaseEndEvent, now + greenMs);
+            phaseTimed = true;
+            greenIdleSinceMs = hasDemand(greenPhase) ? NOT_IDLE : now;
+            checkGapOut();
+        }
+    }
+    
+    /**
+     * Checks whether a vehicle of a conflicting movement is in the junction.
+     */
+    private boolean conflictsWithCrossing(ConflictMatrix conflictMatrix, Movement movement) {
+        for (Movement other : MOVEMENTS) {
+            if (crossing[other.ordinal()] > 0 && conflictMatrix.conflicts(movement, other)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Fills the scratch array with the arrival time of the first vehicle
+     * waiting at a stop line, per movement.
+     */
+    private long[] headArrivals() {
+        Arrays.fill(headArrivalMs, Long.MAX_VALUE);
+        for (Lane lane : lanes) {
+            Car head = lane.queue.peek();
+            if (head != null && !lane.headCrossing) {
+                int movement = head.movement.ordinal();
+                headArrivalMs[movement] = Math.min(headArrivalMs[movement], head.arrivalMs);
+            }
+        }
+        return headArrivalMs;
+    }
+    
+    /**
+     * Takes an event from the pool, or creates one if the pool is empty.
+     */
+    private Event newEvent(int type) {
+        Event event = eventPool.poll();
+        if (event == null) {
+            event = new Event();
+        }
+        event.type = type;
+        return event;
+    }
+    
+    /**
+     * Schedules the next arrival of the event's approach, or retires the
+     * event if demand has ended.
+     */
+    private void scheduleArrival(Event event) {
+        long time = arrivals[event.approach].nextArrivalTimeMs();
+        if (time == ArrivalGenerator.NO_ARRIVAL) {
+            eventPool.add(event);
+        } else {
+            schedule(event, time);
+        }
+    }
+    
+    /**
+     * Schedules an event at the given virtual time.
+     */
+    private void schedule(Event event, long time) {
+        event.time = time;
+        event.sequence = sequence++;
+        events.add(event);
+    }
+    
+    /**
+     * Gets the number of vehicles that have crossed.
+     * 
+     * @return the crossing count
+     */
+    public long getCrossedCount() {
+        return crossed;
+    }
+    
+    /**
+     * Gets the number of vehicles still queued or crossing.
+     * 
+     * @return the vehicles in the junction's lanes
+     */
+    public long getWaitingCount() {
+        long waiting = 0;
+        for (int movement = 0; movement < MOVEMENTS.length; movement++) {
+            waiting += queueLengths[movement] + crossing[movement];
+        }
+        return waiting;
+    }
+    
+    /**
+     * Gets the number of phase changes so far.
+     * 
+     * @return the phase change count
+     */
+    public long getPhaseChangeCount() {
+        return phaseChanges;
+    }
+    
+    /**
+     * Gets the number of conflict-matrix phases that ended before their
+     * maximum green because nobody had been waiting for them for the gap
+     * time.
+     * 
+     * @return the gap-out count
+     */
+    public long getGapOutCount() {
+        return gapOuts;
+    }
+    
+    /**
+     * Gets the number of events processed so far.
+     * 
+     * @return the event count
+     */
+    public long getProcessedEvents() {
+        return processedEvents;
+    }
+    
+    /**
+     * Gets the wait times from arrival to admission of all admitted vehicles.
+     * 
+     * @return the wait time histogram, in milliseconds
+     */
+    public WaitTimeHistogram getWaitTimeHistogram() {
+        return waitTimes;
+    }
+    
+    /**
+     * Gets the wait times of the admitted vehicles making one turn.
+     * 
+     * @param turn the turn
+     * @return the wait time histogram, in milliseconds
+     */
+    public WaitTimeHistogram getWaitTimeHistogram(Movement.Turn turn) {
+        return turnWaitTimes[turn.ordinal()];
+    }
+    
+    /**
+     * Parses turn shares given as "left,through,right".
+     * 
+     * @throws IllegalArgumentException if the value is malformed
+     */
+    private static double[] parseTurnShares(String value) {
+        String[] parts = value.split(",");
+        if (parts.length != TURNS.length) {
+            throw new IllegalArgumentException("Turn shares must be left,through,right: " + value);
+        }
+        double[] shares = new double[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                shares[i] = Double.parseDouble(parts[i].trim());
+            }
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid turn shares: " + value, ex);
+        }
+        return shares;
+    }
+    
+    /**
+     * Parses the random seed, in the syntax of {@link Long#getLong}.
+     * 
+     * @throws IllegalArgumentException if the value is not a number
+     */
+    private static long parseSeed(String value) {
+        try {
+            return Long.decode(value.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid " + SEED_PROPERTY + ": " + value, ex);
+        }
+    }
+    
+    /**
+     * Runs the junction under both kinds of control, or the one chosen with
+     * {@code carrefour.junction.control}, with the same arrivals and turns,
+     * and prints throughput and wait times. {@code carrefour.junction.lanes}
+     * sets the lanes per approach, {@code carrefour.junction.turns} the
+     * left,through,right shares and {@code carrefour.junction.greenMs} the
+     * time between two-phase switches and the maximum green of a
+     * conflict-matrix phase, whose minimum green, gap and clearance are set
+     * by {@code carrefour.junction.minGreenMs}, {@code gapMs} and
+     * {@code clearanceMs}. Arrivals use the
+     * {@code carrefour.arrivals.*} properties with the approaches
+     * {@code north}, {@code east}, {@code south} and {@code west}.
+     * 
+     * @param args optional simulated duration in hours (default 24)
+     */
+    public static void main(String[] args) {
+        double hours = args.length > 0 ? Double.parseDouble(args[0]) : 24;
+        long endTimeMs = (long) (hours * 3600000);
+        int lanesPerApproach = Integer.getInteger("carrefour.junction.lanes", DEFAULT_LANES);
+        double[] turnShares =
+            parseTurnShares(System.getProperty("carrefour.junction.turns", DEFAULT_TURN_SHARES));
+        long greenMs = Long.getLong("carrefour.junction.greenMs", DEFAULT_GREEN_MS);
+        long minGreenMs = Long.getLong("carrefour.junction.minGreenMs", Math.min(DEFAULT_MIN_GREEN_MS, greenMs));
+        long gapMs = Long.getLong("carrefour.junction.gapMs", DEFAULT_GAP_MS);
+        long clearanceMs = Long.getLong("carrefour.junction.clearanceMs", DEFAULT_CLEARANCE_MS);
+        String controlName = System.getProperty("carrefour.junction.control", "both")
+            .trim().toUpperCase(Locale.ROOT).replace('-', '_');
+        Control[] controls = "BOTH".equals(controlName) ? Control.values() : new Control[] {
+            Control.valueOf(controlName)
+        };
+        // Every run must see the same arrivals and turns
+        String seedValue = System.getProperty(SEED_PROPERTY);
+        long seed = seedValue != null ? parseSeed(seedValue) : System.nanoTime();
+        System.setProperty(SEED_PROPERTY, Long.toString(seed));
+        long turnSeed = seed ^ "turns".hashCode();
+        
+        System.out.printf("Junction: %d lanes per approach, turn shares left/through/right %s, "
+                          + "green %d ms (min %d, gap %d, clearance %d ms), %.1f h%n",
+                          lanesPerApproach, Arrays.toString(turnShares), greenMs, minGreenMs, gapMs,
+                          clearanceMs, hours);
+        for (Control control : controls) {
+            ArrivalGenerator[] arrivals = new ArrivalGenerator[APPROACHES.length];
+            for (Movement.Approach approach : APPROACHES) {
+                arrivals[approach.ordinal()] = ArrivalGenerator.fromSystemProperties(
+                    approach.name().toLowerCase(Locale.ROOT), DemandProfile.constant(DEFAULT_ARRIVAL_RATE),
+                    ArrivalGenerator.ArrivalProcess.DETERMINISTIC, 0);
+            }
+            JunctionSimulation simulation = new JunctionSimulation(control, lanesPerApproach, arrivals,
+                turnShares, turnSeed, greenMs, minGreenMs, gapMs, clearanceMs, DEFAULT_CROSSING_TIME_MS);
+            long startNanos = System.nanoTime();
+            simulation.runUntil(endTimeMs);
+            double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+            
+            WaitTimeHistogram waits = simulation.getWaitTimeHistogram();
+            System.out.printf("%s: crossed %d (%.0f per hour), still queued %d, %d phase changes, "
+                              + "%d gap-outs (%d events in %.2f s)%n", control, simulation.getCrossedCount(),
+                              simulation.getCrossedCount() / hours, simulation.getWaitingCount(),
+                              simulation.getPhaseChangeCount(), simulation.getGapOutCount(),
+                              simulation.getProcessedEvents(), elapsedSeconds);
+            System.out.printf("  Wait: mean %.1f, p50 %d, p90 %d, p99 %d, max %d ms%n", waits.getMean(),
+                              waits.getP50(), waits.getP90(), waits.getP99(), waits.getMax());
+            for (Movement.Turn turn : TURNS) {
+                WaitTimeHistogram turnWaits = simulation.getWaitTimeHistogram(turn);
+                System.out.printf("  Wait %s: mean %.1f, p99 %d ms%n", turn.name().toLowerCase(Locale.ROOT),
+                                  turnWaits.getMean(), turnWaits.getP99());
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package carrefour;
+
+/**
+ * Fixed-timestep kinematics stage that moves every vehicle in a
+ * {@link VehicleTable} along its lane.
+ * 
+ * <p>Vehicles accelerate up to their speed limit and brake so that they come
+ * to rest exactly on their stop position. A vehicle that has been given the
+ * green light has its stop position cleared and drives on. Each step first
+ * applies the states posted by the vehicle threads, then advances all
+ * vehicles in one pass over four float columns; apart from skipping free
+ * rows, the loop body uses only arithmetic, min, max and sqrt.
+ * 
+ * @author PC-DELL
+ */
+public class KinematicsStepper {
+    private final float acceleration;
+    private final float deceleration;
+    
+    /**
+     * Creates a stepper with the given acceleration and braking rates.
+     * 
+     * @param acceleration acceleration in pixels per second squared (must be > 0)
+     * @param deceleration braking rate in pixels per second squared (must be > 0)
+     * @throws IllegalArgumentException if a rate is not positive
+     */
+    public KinematicsStepper(float acceleration, float deceleration) {
+        if (acceleration <= 0 || deceleration <= 0) {
+            throw new IllegalArgumentException("Acceleration and deceleration must be positive");
+        }
+        this.acceleration = acceleration;
+        this.deceleration = deceleration;
+    }
+    
+    /**
+     * Advances every vehicle in the table by one time step. The calling
+     * thread owns the table's columns.
+     * 
+     * @param table the vehicles to move
+     * @param dtSeconds the time step in seconds
+     */
+    public void step(VehicleTable table, float dtSeconds) {
+        table.applyPostedStates();
+        step(table.positionColumn(), table.speedColumn(), table.maxSpeedColumn(),
+             table.stopPositionColumn(), table.stateColumn(), table.getHighWaterMark(), dtSeconds);
+    }
+    
+    /**
+     * Kernel over the raw columns. Free rows are skipped: one may be being
+     * allocated by another thread, which the stepping thread only sees once
+     * it has applied the row's posted state.
+     */
+    private void step(float[] position, float[] speed, float[] maxSpeed, float[] stopPosition,
+                      int[] state, int count, float dt) {
+        float accelerationStep = acceleration * dt;
+        float twiceDeceleration = 2 * deceleration;
+        for (int i = 0; i < count; i++) {
+            if (state[i] == VehicleTable.STATE_FREE) {
+                continue;
+            }
+            float p = position[i];
+            float stop = stopPosition[i];
+            
+            // Highest speed from which the vehicle can still stop in time
+            float gap = Math.max(stop - p, 0f);
+            float brakingSpeed = (float) Math.sqrt(twiceDeceleration * gap);
+            float v = Math.min(Math.min(speed[i] + accelerationStep, maxSpeed[i]), brakingSpeed);
+            
+            position[i] = Math.min(p + v * dt, stop);
+            speed[i] = v;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package carrefour;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Publishes the statistics counters and the light phase into a fixed-layout
+ * memory-mapped file, so that a local process can read live values straight
+ * from shared memory without any system call per sample.
+ * 
+ * <p>The file is {@value #FILE_SIZE} bytes. It starts with the eight ASCII
+ * bytes "CRFRMTRX"; every other value is a little-endian 64-bit signed
+ * integer at a fixed offset:
+ * <pre>
+ * offset  field
+ *      0  magic, the ASCII bytes "CRFRMTRX" ({@value #MAGIC} read big-endian)
+ *      8  layout version ({@value #LAYOUT_VERSION})
+ *     16  sequence: odd while an update is being written, even otherwise
+ *     24  publish time, milliseconds since the epoch
+ *     32  publish count
+ *     40  vertical vehicles started
+ *     48  vertical vehicles crossed
+ *     56  vertical vehicles waiting
+ *     64  vertical wait time sum, ms
+ *     72  horizontal vehicles started
+ *     80  horizontal vehicles crossed
+ *     88  horizontal vehicles waiting
+ *     96  horizontal wait time sum, ms
+ *    104  light phase: 1 vertical green, 2 horizontal green
+ *    112  vertical wait time p50, ms
+ *    120  vertical wait time p99, ms
+ *    128  vertical wait time max, ms
+ *    136  horizontal wait time p50, ms
+ *    144  horizontal wait time p99, ms
+ *    152  horizontal wait time max, ms
+ *    160  reserved up to the end of the file
+ * </pre>
+ * 
+ * <p>The sequence word is a seqlock. The writer makes it odd, writes the
+ * fields and makes it even again, with store fences in between. A reader
+ * reads the sequence, the fields and the sequence again, and keeps the
+ * values only if both reads returned the same even number. See
+ * {@link MetricsFileReader}.
+ * 
+ * @author PC-DELL
+ */
+public class MappedMetricsFile implements AutoCloseable {
+    /** File magic, the ASCII bytes "CRFRMTRX" read as a big-endian long. */
+    public static final long MAGIC = 0x435246524D545258L;
+    /** Version of the layout described above. */
+    public static final long LAYOUT_VERSION = 1;
+    /** Size of the file in bytes. */
+    public static final int FILE_SIZE = 256;
+    
+    static final int MAGIC_OFFSET = 0;
+    static final int LAYOUT_VERSION_OFFSET = 8;
+    static final int SEQUENCE_OFFSET = 16;
+    static final int PUBLISH_TIME_OFFSET = 24;
+    static final int PUBLISH_COUNT_OFFSET = 32;
+    static final int VERTICAL_STARTED_OFFSET = 40;
+    static final int VERTICAL_CROSSED_OFFSET = 48;
+    static final int VERTICAL_WAITING_OFFSET = 56;
+    static final int VERTICAL_WAIT_SUM_OFFSET = 64;
+    static final int HORIZONTAL_STARTED_OFFSET = 72;
+    static final int HORIZONTAL_CROSSED_OFFSET = 80;
+    static final int HORIZONTAL_WAITING_OFFSET = 88;
+    static final int HORIZONTAL_WAIT_SUM_OFFSET = 96;
+    static final int LIGHT_PHASE_OFFSET = 104;
+    static final int VERTICAL_P50_OFFSET = 112;
+    static final int VERTICAL_P99_OFFSET = 120;
+    static final int VERTICAL_MAX_OFFSET = 128;
+    static final int HORIZONTAL_P50_OFFSET = 136;
+    static final int HORIZONTAL_P99_OFFSET = 144;
+    static final int HORIZONTAL_MAX_OFFSET = 152;
+    /** Offset just past the last published field. */
+    static final int FIELDS_END = 160;
+    
+    private static final String PATH_PROPERTY = "carrefour.metrics.file";
+    private static final String INTERVAL_PROPERTY = "carrefour.metrics.fileIntervalMs";
+    private static final int DEFAULT_INTERVAL_MS = 100;
+    private static final double[] PERCENTILES = {50, 99};
+    private static final Logger LOGGER = Logger.getLogger(MappedMetricsFile.class.getName());
+    
+    private static final MethodHandle RELEASE_FENCE = findFence("releaseFence");
+    private static final MethodHandle ACQUIRE_FENCE = findFence("acquireFence");
+    private static volatile int fenceField; // Fallback fence on runtimes without VarHandle
+    
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final StatisticsTracker statisticsTracker;
+    private final IntSupplier lightState;
+    private final long[] percentileValues = new long[PERCENTILES.length];
+    private ScheduledExecutorService scheduler;
+    private long sequence;
+    private long publishCount;
+    
+    /**
+     * Creates or truncates the metrics file and maps it.
+     * 
+     * @param path the file to publish into
+     * @param statisticsTracker the tracker to publish
+     * @param lightState supplies the current light state
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public MappedMetricsFile(Path path, StatisticsTracker statisticsTracker,
+                             IntSupplier lightState) throws IOException {
+        this.statisticsTracker = statisticsTracker;
+        this.lightState = lightState;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        
+        buffer.putLong(SEQUENCE_OFFSET, 1); // Not readable until the first publish
+        releaseFence();
+        buffer.putLong(MAGIC_OFFSET, Long.reverseBytes(MAGIC)); // Big-endian, so the bytes read as text
+        buffer.putLong(LAYOUT_VERSION_OFFSET, LAYOUT_VERSION);
+        sequence = 0;
+        publish();
+    }
+    
+    /**
+     * Creates the metrics file named by {@code carrefour.metrics.file} and
+     * republishes it every {@code carrefour.metrics.fileIntervalMs}
+     * milliseconds (default 100) from a daemon thread.
+     * 
+     * @param statisticsTracker the tracker to publish
+     * @param lightState supplies the current light state
+     * @return the running publisher, or null if the property is not set or
+     *         the file could not be mapped
+     */
+    public static MappedMetricsFile startFromSystemProperties(StatisticsTracker statisticsTracker,
+                                                              IntSupplier lightState) {
+        String path = System.getProperty(PATH_PROPERTY);
+        if (path == null) {
+            return null;
+        }
+        try {
+            MappedMetricsFile file = new MappedMetricsFile(Paths.get(path), statisticsTracker, lightState);
+            file.start(Integer.getInteger(INTERVAL_PROPERTY, DEFAULT_INTERVAL_MS));
+            LOGGER.info("Publishing metrics to " + path);
+            return file;
+        } catch (IOException | IllegalArgumentException ex) {
+            LOGGER.log(Level.WARNING, "Could not publish metrics to " + path, ex);
+            return null;
+        }
+    }
+    
+    /**
+     * Republishes the metrics at a fixed rate from a daemon thread.
+     * 
+     * @param intervalMs the publish interval in milliseconds (must be > 0)
+     * @throws IllegalArgumentException if intervalMs is not positive
+     * @throws IllegalStateException if already started
+     */
+    public synchronized void start(long intervalMs) {
+        if (intervalMs <= 0) {
+            throw new IllegalArgumentException("Publish interval must be positive");
+        }
+        if (scheduler != null) {
+            throw new IllegalStateException("Metrics file publisher already started");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "MappedMetricsFile");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::publish, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Writes the current values into the file under the seqlock.
+     */
+    public synchronized void publish() {
+        StatisticsSnapshot snapshot = statisticsTracker.snapshot();
+        
+        buffer.putLong(SEQUENCE_OFFSET, ++sequence); // Odd: update in progress
+        releaseFence();
+        
+        buffer.putLong(PUBLISH_TIME_OFFSET, System.currentTimeMillis());
+        buffer.putLong(PUBLISH_COUNT_OFFSET, ++publishCount);
+        buffer.putLong(VERTICAL_STARTED_OFFSET, snapshot.getVerticalVehiclesStarted());
+        buffer.putLong(VERTICAL_CROSSED_OFFSET, snapshot.getVerticalVehiclesCrossed());
+        buffer.putLong(VERTICAL_WAITING_OFFSET, snapshot.getVerticalVehiclesWaiting());
+        buffer.putLong(VERTICAL_WAIT_SUM_OFFSET, snapshot.getTotalVerticalWaitTime());
+        buffer.putLong(HORIZONTAL_STARTED_OFFSET, snapshot.getHorizontalVehiclesStarted());
+        buffer.putLong(HORIZONTAL_CROSSED_OFFSET, snapshot.getHorizontalVehiclesCrossed());
+        buffer.putLong(HORIZONTAL_WAITING_OFFSET, snapshot.getHorizontalVehiclesWaiting());
+        buffer.putLong(HORIZONTAL_WAIT_SUM_OFFSET, snapshot.getTotalHorizontalWaitTime());
+        buffer.putLong(LIGHT_PHASE_OFFSET, lightState.getAsInt());
+        putPercentiles(statisticsTracker.getVerticalWaitTimeHistogram(),
+                       VERTICAL_P50_OFFSET, VERTICAL_P99_OFFSET, VERTICAL_MAX_OFFSET);
+        putPercentiles(statisticsTracker.getHorizontalWaitTimeHistogram(),
+                       HORIZONTAL_P50_OFFSET, HORIZONTAL_P99_OFFSET, HORIZONTAL_MAX_OFFSET);
+        
+        releaseFence();
+        buffer.putLong(SEQUENCE_OFFSET, ++sequence); // Even: consistent again
+    }
+    
+    /**
+     * Writes the p50, p99 and maximum of a histogram.
+     */
+    private void putPercentiles(WaitTimeHistogram histogram, int p50Offset, int p99Offset, int maxOffset) {
+        histogram.getValuesAtPercentiles(PERCENTILES, percentileValues);
+        buffer.putLong(p50Offset, percentileValues[0]);
+        buffer.putLong(p99Offset, percentileValues[1]);
+        buffer.putLong(maxOffset, histogram.getMax());
+    }
+    
+    /**
+     * Stops publishing and closes the file. The last published values stay
+     * in the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        buffer.force();
+        channel.close();
+    }
+    
+    /**
+     * Orders every earlier store before every later one.
+     */
+    static void releaseFence() {
+        if (RELEASE_FENCE != null) {
+            try {
+                RELEASE_FENCE.invokeExact();
+                return;
+            } catch (Throwable ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+        fenceField++;
+    }
+    
+    /**
+     * Orders every earlier load before every later load or store.
+     */
+    static void acquireFence() {
+        if (ACQUIRE_FENCE != null) {
+            try {
+                ACQUIRE_FENCE.invokeExact();
+                return;
+            } catch (Throwable ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+        int ignored = fenceField;
+    }
+    
+    /**
+     * Looks up a static {@code VarHandle} fence method reflectively, so the
+     * project still compiles and runs on Java 8, where a volatile access is
+     * used instead.
+     * 
+     * @return the fence, or null if unsupported
+     */
+    private static MethodHandle findFence(String name) {
+        try {
+            Class<?> varHandle = Class.forName("java.lang.invoke.VarHandle");
+            return MethodHandles.publicLookup().findStatic(varHandle, name, MethodType.methodType(void.class));
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+}
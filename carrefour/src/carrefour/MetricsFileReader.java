@@ -0,0 +1,140 @@
+package carrefour;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reads the metrics file written by {@link MappedMetricsFile}.
+ * 
+ * <p>The file is mapped once; every sample is then read straight from
+ * shared memory under the seqlock protocol, with no system call. Run it as a
+ * small monitor:
+ * <pre>
+ * java -cp build/classes carrefour.MetricsFileReader /tmp/carrefour.metrics 1000
+ * </pre>
+ * 
+ * @author PC-DELL
+ */
+public class MetricsFileReader implements AutoCloseable {
+    private static final int FIELD_COUNT = MappedMetricsFile.FIELDS_END / Long.BYTES;
+    private static final int MAX_SPINS = 1000;
+    
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long[] values = new long[FIELD_COUNT]; // Last consistent sample
+    private final long[] scratch = new long[FIELD_COUNT]; // Copy in progress, possibly torn
+    
+    /**
+     * Maps an existing metrics file read-only.
+     * 
+     * @param path the metrics file
+     * @throws IOException if the file cannot be mapped or has the wrong format
+     */
+    public MetricsFileReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        if (channel.size() < MappedMetricsFile.FILE_SIZE) {
+            channel.close();
+            throw new IOException(path + " is too small to be a metrics file");
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, MappedMetricsFile.FILE_SIZE);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        // The magic is stored big-endian, as text
+        if (Long.reverseBytes(buffer.getLong(MappedMetricsFile.MAGIC_OFFSET)) != MappedMetricsFile.MAGIC
+            || buffer.getLong(MappedMetricsFile.LAYOUT_VERSION_OFFSET) != MappedMetricsFile.LAYOUT_VERSION) {
+            channel.close();
+            throw new IOException(path + " is not a version " + MappedMetricsFile.LAYOUT_VERSION
+                                  + " metrics file");
+        }
+    }
+    
+    /**
+     * Takes a consistent copy of every field, retrying while the writer is
+     * in the middle of an update.
+     * 
+     * @return true if a consistent copy was taken, false if the writer kept
+     *         the file busy for too long, in which case the previous sample
+     *         is kept
+     */
+    public boolean sample() {
+        for (int spin = 0; spin < MAX_SPINS; spin++) {
+            long before = buffer.getLong(MappedMetricsFile.SEQUENCE_OFFSET);
+            MappedMetricsFile.acquireFence();
+            if ((before & 1) == 0) {
+                for (int i = 0; i < FIELD_COUNT; i++) {
+                    scratch[i] = buffer.getLong(i * Long.BYTES);
+                }
+                MappedMetricsFile.acquireFence();
+                if (buffer.getLong(MappedMetricsFile.SEQUENCE_OFFSET) == before) {
+                    System.arraycopy(scratch, 0, values, 0, FIELD_COUNT);
+                    return true;
+                }
+            }
+            Thread.yield();
+        }
+        return false;
+    }
+    
+    /**
+     * Gets a field of the last consistent sample.
+     * 
+     * @param offset the field offset, one of the offsets of the file layout
+     * @return the field value
+     * @throws IllegalArgumentException if the offset is not a field offset
+     */
+    public long get(int offset) {
+        if (offset < 0 || offset >= MappedMetricsFile.FIELDS_END || offset % Long.BYTES != 0) {
+            throw new IllegalArgumentException("Not a field offset: " + offset);
+        }
+        return values[offset / Long.BYTES];
+    }
+    
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+    
+    /**
+     * Prints the metrics file at a fixed interval until interrupted.
+     * 
+     * @param args the metrics file path, and optionally the interval in milliseconds (default 1000)
+     * @throws IOException if the file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: MetricsFileReader <metrics file> [interval ms]");
+            System.exit(2);
+        }
+        long intervalMs = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        try (MetricsFileReader reader = new MetricsFileReader(Paths.get(args[0]))) {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (reader.sample()) {
+                    System.out.printf("%s #%d phase %d | vertical crossed %d waiting %d p50 %d p99 %d max %d"
+                                      + " | horizontal crossed %d waiting %d p50 %d p99 %d max %d%n",
+                        Instant.ofEpochMilli(reader.get(MappedMetricsFile.PUBLISH_TIME_OFFSET)),
+                        reader.get(MappedMetricsFile.PUBLISH_COUNT_OFFSET),
+                        reader.get(MappedMetricsFile.LIGHT_PHASE_OFFSET),
+                        reader.get(MappedMetricsFile.VERTICAL_CROSSED_OFFSET),
+                        reader.get(MappedMetricsFile.VERTICAL_WAITING_OFFSET),
+                        reader.get(MappedMetricsFile.VERTICAL_P50_OFFSET),
+                        reader.get(MappedMetricsFile.VERTICAL_P99_OFFSET),
+                        reader.get(MappedMetricsFile.VERTICAL_MAX_OFFSET),
+                        reader.get(MappedMetricsFile.HORIZONTAL_CROSSED_OFFSET),
+                        reader.get(MappedMetricsFile.HORIZONTAL_WAITING_OFFSET),
+                        reader.get(MappedMetricsFile.HORIZONTAL_P50_OFFSET),
+                        reader.get(MappedMetricsFile.HORIZONTAL_P99_OFFSET),
+                        reader.get(MappedMetricsFile.HORIZONTAL_MAX_OFFSET));
+                } else {
+                    System.out.println("Writer busy, sample skipped");
+                }
+                LockSupport.parkNanos(intervalMs * 1_000_000L);
+            }
+        }
+    }
+}
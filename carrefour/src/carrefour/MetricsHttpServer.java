@@ -0,0 +1,310 @@
+package carrefour;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Embedded HTTP server exposing the simulation metrics at {@code /metrics}
+ * in the Prometheus text exposition format.
+ * 
+ * <p>The server is optional and started only when the
+ * {@code carrefour.metrics.port} system property is set. It listens on the
+ * loopback interface unless {@code carrefour.metrics.host} says otherwise.
+ * Scrapes are handled one at a time on a single daemon thread, and every
+ * response is rendered into the same text and byte buffers, which only grow
+ * when the output does. Percentiles come from one pass per histogram into
+ * preallocated arrays, so a scrape adds next to no garbage on top of what the
+ * JDK HTTP server allocates per exchange.
+ * 
+ * @author PC-DELL
+ */
+public class MetricsHttpServer {
+    private static final String PORT_PROPERTY = "carrefour.metrics.port";
+    private static final String HOST_PROPERTY = "carrefour.metrics.host";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999, 1.0};
+    private static final String[] QUANTILE_LABELS = {"0.5", "0.9", "0.99", "0.999", "1"};
+    private static final long[] RATE_WINDOWS_MS = {10000, 60000, 300000};
+    private static final String[] RATE_WINDOW_LABELS = {"10s", "60s", "5m"};
+    private static final Logger LOGGER = Logger.getLogger(MetricsHttpServer.class.getName());
+    
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final StatisticsTracker statisticsTracker;
+    private final IntSupplier lightState;
+    private final Semaphore[] semaphores;
+    
+    // Reused by every scrape; guarded by this
+    private final StringBuilder text = new StringBuilder(INITIAL_BUFFER_SIZE);
+    private final double[] percentiles = new double[QUANTILES.length];
+    private final long[] quantileValues = new long[QUANTILES.length];
+    private byte[] body = new byte[INITIAL_BUFFER_SIZE];
+    
+    /**
+     * Creates a metrics server. Call {@link #start()} to begin serving.
+     * 
+     * @param address the address to listen on
+     * @param statisticsTracker the tracker to export
+     * @param lightState supplies the current light state (1 vertical green, 2 horizontal green)
+     * @param semaphores the semaphores whose permits and queue lengths are exported
+     * @throws IOException if the server socket cannot be bound
+     */
+    public MetricsHttpServer(InetSocketAddress address, StatisticsTracker statisticsTracker,
+                             IntSupplier lightState, Semaphore... semaphores) throws IOException {
+        this.statisticsTracker = statisticsTracker;
+        this.lightState = lightState;
+        this.semaphores = semaphores.clone();
+        for (int i = 0; i < QUANTILES.length; i++) {
+            percentiles[i] = QUANTILES[i] * 100;
+        }
+        
+        this.server = HttpServer.create(address, 0);
+        this.executor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "MetricsHttpServer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", this::handle);
+    }
+    
+    /**
+     * Creates and starts a metrics server if {@code carrefour.metrics.port}
+     * is set.
+     * 
+     * @param statisticsTracker the tracker to export
+     * @param lightState supplies the current light state
+     * @param semaphores the semaphores to export
+     * @return the running server, or null if metrics are disabled or the
+     *         server could not be started
+     */
+    public static MetricsHttpServer startFromSystemProperties(StatisticsTracker statisticsTracker,
+                                                              IntSupplier lightState,
+                                                              Semaphore... semaphores) {
+        Integer port = Integer.getInteger(PORT_PROPERTY);
+        if (port == null) {
+            return null;
+        }
+        try {
+            String host = System.getProperty(HOST_PROPERTY);
+            InetAddress address = host != null ? InetAddress.getByName(host) : InetAddress.getLoopbackAddress();
+            MetricsHttpServer metricsServer = new MetricsHttpServer(
+                new InetSocketAddress(address, port), statisticsTracker, lightState, semaphores);
+            metricsServer.start();
+            LOGGER.info("Serving metrics on http://" + address.getHostAddress() + ":"
+                        + metricsServer.getPort() + "/metrics");
+            return metricsServer;
+        } catch (IOException | IllegalArgumentException ex) {
+            LOGGER.log(Level.WARNING, "Could not start the metrics server on port " + port, ex);
+            return null;
+        }
+    }
+    
+    /**
+     * Starts serving requests.
+     */
+    public void start() {
+        server.start();
+    }
+    
+    /**
+     * Stops the server, waiting at most one second for a scrape in progress.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+    
+    /**
+     * Gets the port the server is bound to.
+     * 
+     * @return the local port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+    
+    /**
+     * Answers one scrape.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            synchronized (this) {
+                int length = render();
+                exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                if ("HEAD".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(200, -1);
+                    return;
+                }
+                exchange.sendResponseHeaders(200, length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body, 0, length);
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+    
+    /**
+     * Renders every metric into the body buffer.
+     * 
+     * @return the number of bytes in the body
+     */
+    int render() {
+        text.setLength(0);
+        StatisticsSnapshot snapshot = statisticsTracker.snapshot();
+        
+        header("carrefour_vehicles_started_total", "counter", "Vehicles that started waiting.");
+        sample("carrefour_vehicles_started_total", "direction", "vertical",
+               snapshot.getVerticalVehiclesStarted());
+        sample("carrefour_vehicles_started_total", "direction", "horizontal",
+               snapshot.getHorizontalVehiclesStarted());
+        
+        header("carrefour_vehicles_crossed_total", "counter", "Vehicles that crossed the intersection.");
+        sample("carrefour_vehicles_crossed_total", "direction", "vertical",
+               snapshot.getVerticalVehiclesCrossed());
+        sample("carrefour_vehicles_crossed_total", "direction", "horizontal",
+               snapshot.getHorizontalVehiclesCrossed());
+        
+        header("carrefour_vehicles_gave_up_total", "counter", "Vehicles that gave up waiting and left.");
+        sample("carrefour_vehicles_gave_up_total", "direction", "vertical",
+               snapshot.getVerticalVehiclesGaveUp());
+        sample("carrefour_vehicles_gave_up_total", "direction", "horizontal",
+               snapshot.getHorizontalVehiclesGaveUp());
+        
+        header("carrefour_vehicles_waiting", "gauge", "Vehicles waiting for their lane or the light.");
+        sample("carrefour_vehicles_waiting", "direction", "vertical", snapshot.getVerticalVehiclesWaiting());
+        sample("carrefour_vehicles_waiting", "direction", "horizontal",
+               snapshot.getHorizontalVehiclesWaiting());
+        
+        header("carrefour_crossings_per_second", "gauge", "Crossing throughput over a sliding window.");
+        for (int i = 0; i < RATE_WINDOWS_MS.length; i++) {
+            text.append("carrefour_crossings_per_second{window=\"").append(RATE_WINDOW_LABELS[i]).append("\"} ");
+            appendDecimal(statisticsTracker.getCrossingsPerSecond(RATE_WINDOWS_MS[i]));
+            text.append('\n');
+        }
+        
+        header("carrefour_wait_time_milliseconds", "summary", "Time from spawn until the green light permit.");
+        summary("carrefour_wait_time_milliseconds", "direction", "vertical",
+                statisticsTracker.getVerticalWaitTimeHistogram());
+        summary("carrefour_wait_time_milliseconds", "direction", "horizontal",
+                statisticsTracker.getHorizontalWaitTimeHistogram());
+        
+        header("carrefour_stage_latency_microseconds", "summary", "Time spent in each stage of a trip.");
+        for (VehicleStage stage : VehicleStage.values()) {
+            summary("carrefour_stage_latency_microseconds", "stage", stage.name(),
+                    statisticsTracker.getStageLatencyHistogram(stage));
+        }
+        
+        header("carrefour_semaphore_queue_length", "gauge", "Threads blocked on a semaphore.");
+        for (Semaphore semaphore : semaphores) {
+            sample("carrefour_semaphore_queue_length", "semaphore", semaphore.getName(),
+                   semaphore.getQueueLength());
+        }
+        header("carrefour_semaphore_permits", "gauge", "Free permits of a semaphore.");
+        for (Semaphore semaphore : semaphores) {
+            sample("carrefour_semaphore_permits", "semaphore", semaphore.getName(), semaphore.getCount());
+        }
+        
+        header("carrefour_light_phase", "gauge", "Green direction: 1 vertical, 2 horizontal.");
+        text.append("carrefour_light_phase ").append(lightState.getAsInt()).append('\n');
+        
+        return encode();
+    }
+    
+    /**
+     * Appends the HELP and TYPE lines of a metric.
+     */
+    private void header(String name, String type, String help) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+    
+    /**
+     * Appends one sample with a single label.
+     */
+    private void sample(String name, String label, String value, long sample) {
+        text.append(name).append('{').append(label).append("=\"").append(value).append("\"} ")
+            .append(sample).append('\n');
+    }
+    
+    /**
+     * Appends the quantiles, sum and count of a histogram as a summary.
+     */
+    private void summary(String name, String label, String value, WaitTimeHistogram histogram) {
+        histogram.getValuesAtPercentiles(percentiles, quantileValues);
+        for (int i = 0; i < QUANTILES.length; i++) {
+            text.append(name).append('{').append(label).append("=\"").append(value)
+                .append("\",quantile=\"").append(QUANTILE_LABELS[i]).append("\"} ")
+                .append(quantileValues[i]).append('\n');
+        }
+        text.append(name).append("_sum{").append(label).append("=\"").append(value).append("\"} ")
+            .append(histogram.getSum()).append('\n');
+        text.append(name).append("_count{").append(label).append("=\"").append(value).append("\"} ")
+            .append(histogram.getCount()).append('\n');
+    }
+    
+    /**
+     * Appends a non-negative value with three decimals, without going
+     * through the allocating double formatting.
+     */
+    private void appendDecimal(double value) {
+        long thousandths = Math.round(Math.max(value, 0) * 1000);
+        text.append(thousandths / 1000).append('.');
+        long fraction = thousandths % 1000;
+        if (fraction < 100) {
+            text.append('0');
+        }
+        if (fraction < 10) {
+            text.append('0');
+        }
+        text.append(fraction);
+    }
+    
+    /**
+     * Copies the rendered text into the body buffer. The text is ASCII
+     * except for semaphore names, which are encoded as UTF-8.
+     */
+    private int encode() {
+        int length = text.length();
+        if (body.length < length * 3) {
+            body = Arrays.copyOf(body, Math.max(length * 3, body.length * 2));
+        }
+        int position = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                body[position++] = (byte) c;
+            } else if (c < 0x800) {
+                body[position++] = (byte) (0xC0 | (c >> 6));
+                body[position++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                // Surrogate pairs are not expected in names; encode them as '?'
+                if (Character.isSurrogate(c)) {
+                    body[position++] = '?';
+                    continue;
+                }
+                body[position++] = (byte) (0xE0 | (c >> 12));
+                body[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                body[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return position;
+    }
+}
@@ -0,0 +1,113 @@
+package carrefour;
+
+/**
+ * The twelve movements of a four-leg junction with right-hand traffic: a
+ * left turn, a through movement and a right turn from each approach. A
+ * movement is named after the approach its vehicles come from, so
+ * NORTH_THROUGH vehicles drive southwards.
+ * 
+ * @author PC-DELL
+ */
+public enum Movement {
+    NORTH_LEFT(Approach.NORTH, Turn.LEFT),
+    NORTH_THROUGH(Approach.NORTH, Turn.THROUGH),
+    NORTH_RIGHT(Approach.NORTH, Turn.RIGHT),
+    EAST_LEFT(Approach.EAST, Turn.LEFT),
+    EAST_THROUGH(Approach.EAST, Turn.THROUGH),
+    EAST_RIGHT(Approach.EAST, Turn.RIGHT),
+    SOUTH_LEFT(Approach.SOUTH, Turn.LEFT),
+    SOUTH_THROUGH(Approach.SOUTH, Turn.THROUGH),
+    SOUTH_RIGHT(Approach.SOUTH, Turn.RIGHT),
+    WEST_LEFT(Approach.WEST, Turn.LEFT),
+    WEST_THROUGH(Approach.WEST, Turn.THROUGH),
+    WEST_RIGHT(Approach.WEST, Turn.RIGHT);
+    
+    /**
+     * The legs of the junction, in clockwise order.
+     */
+    public enum Approach {
+        NORTH,
+        EAST,
+        SOUTH,
+        WEST
+    }
+    
+    /**
+     * Where a vehicle goes relative to its approach.
+     */
+    public enum Turn {
+        LEFT,
+        THROUGH,
+        RIGHT
+    }
+    
+    private static final Movement[] MOVEMENTS = values();
+    
+    private final Approach approach;
+    private final Turn turn;
+    
+    Movement(Approach approach, Turn turn) {
+        this.approach = approach;
+        this.turn = turn;
+    }
+    
+    /**
+     * Gets the movement of a turn from an approach.
+     * 
+     * @param approach the approach the vehicle comes from
+     * @param turn where the vehicle goes
+     * @return the movement
+     */
+    public static Movement of(Approach approach, Turn turn) {
+        return MOVEMENTS[approach.ordinal() * Turn.values().length + turn.ordinal()];
+    }
+    
+    /**
+     * Gets the approach the vehicles come from.
+     * 
+     * @return the entry approach
+     */
+    public Approach getApproach() {
+        return approach;
+    }
+    
+    /**
+     * Gets where the vehicles go relative to their approach.
+     * 
+     * @return the turn
+     */
+    public Turn getTurn() {
+        return turn;
+    }
+    
+    /**
+     * Gets the leg the vehicles leave by. With right-hand traffic a left
+     * turn exits on the next leg clockwise, a through movement on the
+     * opposite leg and a right turn on the previous leg.
+     * 
+     * @return the exit leg
+     */
+    public Approach getExit() {
+        int legs = Approach.values().length;
+        return Approach.values()[(approach.ordinal() + turn.ordinal() + 1) % legs];
+    }
+    
+    /**
+     * Checks if the vehicles come from the north or south leg, the vertical
+     * axis of the two-phase controller.
+     * 
+     * @return true for the north-south axis, false for east-west
+     */
+    public boolean isNorthSouth() {
+        return approach == Approach.NORTH || approach == Approach.SOUTH;
+    }
+    
+    /**
+     * Gets the bit of this movement in a movement mask.
+     * 
+     * @return the mask with only this movement set
+     */
+    public long mask() {
+        return 1L << ordinal();
+    }
+}
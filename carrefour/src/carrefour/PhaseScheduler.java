@@ -0,0 +1,114 @@
+package carrefour;
+
+/**
+ * Chooses which movements get green, from a {@link ConflictMatrix} and the
+ * queues at the stop lines. A phase is a bit mask over {@link Movement}
+ * ordinals.
+ * 
+ * <p>Each phase is built around the movement whose first vehicle has waited
+ * longest, so no movement starves. Every other movement that is compatible
+ * with the phase so far is then added, longest queue first. Movements with
+ * nobody waiting are added last, so the phase is maximal and vehicles that
+ * arrive during it can go straight through. On equal queues, movements that
+ * are already green come first, which avoids clearance intervals for nothing.
+ * 
+ * <p>A scheduler keeps scratch state and is used by a single thread.
+ * 
+ * @author PC-DELL
+ */
+public class PhaseScheduler {
+    private static final Movement[] MOVEMENTS = Movement.values();
+    
+    private final ConflictMatrix conflictMatrix;
+    private final Movement[] order = MOVEMENTS.clone(); // Scratch, reordered on every decision
+    
+    /**
+     * Creates a scheduler.
+     * 
+     * @param conflictMatrix the movements that may not run together
+     */
+    public PhaseScheduler(ConflictMatrix conflictMatrix) {
+        this.conflictMatrix = conflictMatrix;
+    }
+    
+    /**
+     * Chooses the next phase. When no vehicle waits at any stop line the
+     * current phase is kept; before the first phase, the phase of the first
+     * movement is formed instead.
+     * 
+     * @param currentPhase the movements that are green now (0 before the first phase)
+     * @param queueLengths vehicles waiting per movement, indexed by ordinal
+     * @param headArrivalMs arrival time of the first vehicle waiting at a stop
+     *                      line per movement, or Long.MAX_VALUE if there is none
+     * @return the movements to give green to next, all mutually compatible
+     */
+    public long nextPhase(long currentPhase, int[] queueLengths, long[] headArrivalMs) {
+        Movement oldest = null;
+        long oldestArrivalMs = Long.MAX_VALUE;
+        for (Movement movement : MOVEMENTS) {
+            if (headArrivalMs[movement.ordinal()] < oldestArrivalMs) {
+                oldest = movement;
+                oldestArrivalMs = headArrivalMs[movement.ordinal()];
+            }
+        }
+        if (oldest == null) {
+            if (currentPhase != 0) {
+                return currentPhase;
+            }
+            oldest = MOVEMENTS[0];
+        }
+        
+        sortByDemand(currentPhase, queueLengths);
+        long phase = oldest.mask();
+        for (Movement movement : order) {
+            if (conflictMatrix.isCompatible(phase, movement)) {
+                phase |= movement.mask();
+            }
+        }
+        return phase;
+    }
+    
+    /**
+     * Sorts the scratch order by queue length, longest first, preferring
+     * movements of the current phase on ties.
+     */
+    private void sortByDemand(long currentPhase, int[] queueLengths) {
+        // Insertion sort: twelve elements, no allocation
+        for (int i = 1; i < order.length; i++) {
+            Movement movement = order[i];
+            int j = i - 1;
+            while (j >= 0 && comesBefore(movement, order[j], currentPhase, queueLengths)) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = movement;
+        }
+    }
+    
+    /**
+     * Checks whether one movement should be offered a place in the phase
+     * before another.
+     */
+    private static boolean comesBefore(Movement a, Movement b, long currentPhase, int[] queueLengths) {
+        int queueA = queueLengths[a.ordinal()];
+        int queueB = queueLengths[b.ordinal()];
+        if (queueA != queueB) {
+            return queueA > queueB;
+        }
+        boolean greenA = (currentPhase & a.mask()) != 0;
+        boolean greenB = (currentPhase & b.mask()) != 0;
+        if (greenA != greenB) {
+            return greenA;
+        }
+        return a.ordinal() < b.ordinal();
+    }
+    
+    /**
+     * Gets the conflict matrix the phases are built from.
+     * 
+     * @return the conflict matrix
+     */
+    public ConflictMatrix getConflictMatrix() {
+        return conflictMatrix;
+    }
+}
@@ -0,0 +1,33 @@
+package carrefour;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning one traffic light switch, including the
+ * time the controller waited for the green permit to come back.
+ * 
+ * @author PC-DELL
+ */
+@Name("carrefour.PhaseSwitch")
+@Label("Phase Switch")
+@Category({"Carrefour", "Traffic"})
+@Description("The traffic controller switched the green light to the other direction")
+class PhaseSwitchEvent extends jdk.jfr.Event {
+    @Label("From State")
+    @Description("1 for vertical green, 2 for horizontal green")
+    int fromState;
+    
+    @Label("To State")
+    int toState;
+    
+    @Label("Vertical Queue")
+    @Description("Vertical vehicles queued for their lane or the light")
+    int verticalQueue;
+    
+    @Label("Horizontal Queue")
+    @Description("Horizontal vehicles queued for their lane or the light")
+    int horizontalQueue;
+}
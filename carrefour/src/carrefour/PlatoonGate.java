@@ -0,0 +1,157 @@
+package carrefour;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stop line of one approach under platoon admission. Vehicles queue at the
+ * gate in arrival order, and the light cycle admits them as a group: one
+ * {@link #open} call when the light turns green releases the whole queue
+ * with a single notifyAll, instead of each vehicle taking a lane permit and
+ * a light permit in turn.
+ * 
+ * <p>Every vehicle takes a ticket when it arrives. While the gate is open,
+ * ticket t may enter at {@code base + (t - baseTicket) * headway}, so the
+ * queue discharges at the saturation headway without any handoff between
+ * vehicles: each one works out its own entry time and waits for it. A
+ * vehicle arriving at an open gate after its slot has passed enters at once
+ * and starts a new run of slots. When the gate closes, the vehicles whose
+ * slot has not come yet wait for the next green, ahead of later arrivals.
+ * 
+ * @author PC-DELL
+ */
+public class PlatoonGate {
+    private final long headwayNanos;
+    
+    // Guarded by this
+    private long nextTicket;
+    private long firstWaitingTicket; // Tickets below it have entered
+    private long baseTicket;
+    private long baseNanos;
+    private boolean open;
+    
+    /**
+     * Creates a closed gate.
+     * 
+     * @param saturationHeadwayMs time between two vehicles entering, in milliseconds (must be > 0)
+     * @throws IllegalArgumentException if the headway is not positive
+     */
+    public PlatoonGate(long saturationHeadwayMs) {
+        if (saturationHeadwayMs <= 0) {
+            throw new IllegalArgumentException("Saturation headway must be positive");
+        }
+        this.headwayNanos = TimeUnit.MILLISECONDS.toNanos(saturationHeadwayMs);
+    }
+    
+    /**
+     * Queues the calling vehicle and waits until it may enter the
+     * intersection.
+     * 
+     * @throws InterruptedException if interrupted while waiting; the ticket
+     *         is then lost, which costs the vehicles behind one headway
+     */
+    public synchronized void enter() throws InterruptedException {
+        enter(Long.MAX_VALUE);
+    }
+    
+    /**
+     * Queues the calling vehicle and waits until it may enter the
+     * intersection, or gives up after the given time.
+     * 
+     * @param timeout the longest time to wait
+     * @param unit the unit of timeout
+     * @return true if the vehicle may enter, false if it gave up; its slot
+     *         then goes unused
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized boolean tryEnter(long timeout, TimeUnit unit) throws InterruptedException {
+        return enter(unit.toNanos(timeout));
+    }
+    
+    /**
+     * Takes a ticket and waits for its slot, for at most timeoutNanos.
+     */
+    private boolean enter(long timeoutNanos) throws InterruptedException {
+        long ticket = nextTicket++;
+        long now = System.nanoTime();
+        if (open && slotOf(ticket) < now) {
+            // Nobody ahead is still waiting: enter now and space the next arrivals from here
+            baseTicket = ticket;
+            baseNanos = now;
+        }
+        long deadline = timeoutNanos == Long.MAX_VALUE ? Long.MAX_VALUE : now + timeoutNanos;
+        while (true) {
+            if (ticket < firstWaitingTicket) {
+                return true; // Its slot came during a green that has closed since
+            }
+            long waitNanos = deadline == Long.MAX_VALUE ? Long.MAX_VALUE : deadline - now;
+            if (open) {
+                long slot = slotOf(ticket);
+                if (slot <= now) {
+                    return true;
+                }
+                waitNanos = Math.min(waitNanos, slot - now);
+            }
+            if (waitNanos <= 0) {
+                return false;
+            }
+            if (waitNanos == Long.MAX_VALUE) {
+                wait();
+            } else {
+                TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+            }
+            now = System.nanoTime();
+        }
+    }
+    
+    /**
+     * Opens the gate: every queued vehicle gets its entry slot, the first one
+     * right away, and all are woken at once.
+     */
+    public synchronized void open() {
+        if (open) {
+            return;
+        }
+        open = true;
+        baseTicket = firstWaitingTicket;
+        baseNanos = System.nanoTime();
+        notifyAll();
+    }
+    
+    /**
+     * Closes the gate. Vehicles whose slot has come may still enter; the
+     * others wait for the next {@link #open}.
+     */
+    public synchronized void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        firstWaitingTicket = enteredBy(System.nanoTime());
+    }
+    
+    /**
+     * Gets the number of vehicles queued at the gate whose slot has not
+     * come yet.
+     * 
+     * @return the queue length
+     */
+    public synchronized int getQueueLength() {
+        long entered = open ? enteredBy(System.nanoTime()) : firstWaitingTicket;
+        return (int) (nextTicket - entered);
+    }
+    
+    /**
+     * Gets the first ticket whose slot is after the given time, while open.
+     */
+    private long enteredBy(long nowNanos) {
+        long slotsPassed = (nowNanos - baseNanos) / headwayNanos + 1;
+        return Math.max(firstWaitingTicket, Math.min(nextTicket, baseTicket + slotsPassed));
+    }
+    
+    /**
+     * Gets the entry time of a ticket in the current run of slots.
+     */
+    private long slotOf(long ticket) {
+        return baseNanos + (ticket - baseTicket) * headwayNanos;
+    }
+}
@@ -0,0 +1,243 @@
+package carrefour;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size ring of time buckets covering a sliding window, for rates
+ * (values added up per bucket) and gauges (largest value per bucket).
+ * 
+ * <p>Each slot packs the bucket's epoch (the time divided by the bucket
+ * width) together with its value into a single long, updated with a CAS. A
+ * writer that finds an older epoch in its slot starts the bucket afresh, so
+ * the ring rolls forward as a side effect of updates: there is no background
+ * thread and no per-update allocation, and memory stays constant however long
+ * the series runs. Buckets that were not written during the window read as
+ * zero.
+ * 
+ * <p>Rates are striped: {@link #add} updates a ring of its own per stripe,
+ * picked from the thread id, and reads add the stripes up, so concurrent
+ * writers do not all CAS the same current slot. Gauges are sampled by a
+ * single thread, and {@link #recordMax} only uses the first ring; a series
+ * is used for one or the other.
+ * 
+ * <p>The series does not read a clock itself. The caller passes the current
+ * time to every call, so several series driven by one clock roll in lockstep.
+ * 
+ * @author PC-DELL
+ */
+public class RollingTimeSeries {
+    private static final int VALUE_BITS = 40;
+    private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+    private static final long EPOCH_MASK = (1L << (63 - VALUE_BITS)) - 1;
+    private static final long EMPTY = -1L;
+    private static final int PADDING = 16; // Longs between rings, so their current slots never share a line
+    private static final int MAX_STRIPES = 16;
+    
+    private final long bucketWidthMs;
+    private final int bucketCount;
+    private final int ringStride;
+    private final int stripeMask;
+    private final AtomicLongArray slots;
+    
+    /**
+     * Creates a series of the given resolution and length.
+     * 
+     * @param bucketWidthMs the time covered by one bucket, in milliseconds
+     * @param bucketCount the number of buckets kept
+     * @throws IllegalArgumentException if either argument is not positive
+     */
+    public RollingTimeSeries(long bucketWidthMs, int bucketCount) {
+        if (bucketWidthMs <= 0 || bucketCount <= 0) {
+            throw new IllegalArgumentException("Bucket width and count must be positive");
+        }
+        this.bucketWidthMs = bucketWidthMs;
+        this.bucketCount = bucketCount;
+        this.ringStride = bucketCount + PADDING;
+        int stripeCount = Stripes.countFor(MAX_STRIPES);
+        this.stripeMask = stripeCount - 1;
+        this.slots = new AtomicLongArray(PADDING + stripeCount * ringStride);
+        clear();
+    }
+    
+    /**
+     * Adds to the bucket covering the given time.
+     * 
+     * @param nowMs the current time in milliseconds
+     * @param delta the amount to add (must be >= 0)
+     */
+    public void add(long nowMs, long delta) {
+        long epoch = nowMs / bucketWidthMs;
+        int index = ringOf(Stripes.indexFor(Thread.currentThread().getId(), stripeMask)) + indexOf(epoch);
+        long tag = epoch & EPOCH_MASK;
+        while (true) {
+            long slot = slots.get(index);
+            long value = slot != EMPTY && (slot >>> VALUE_BITS) == tag ? slot & VALUE_MASK : 0;
+            long updated = (tag << VALUE_BITS) | Math.min(value + delta, VALUE_MASK);
+            if (slots.compareAndSet(index, slot, updated)) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Raises the bucket covering the given time to at least the given value.
+     * Not striped: meant for a gauge sampled by one thread at a time.
+     * 
+     * @param nowMs the current time in milliseconds
+     * @param value the sampled value (must be >= 0)
+     */
+    public void recordMax(long nowMs, long value) {
+        long epoch = nowMs / bucketWidthMs;
+        int index = ringOf(0) + indexOf(epoch);
+        long tag = epoch & EPOCH_MASK;
+        long clamped = Math.min(Math.max(value, 0), VALUE_MASK);
+        while (true) {
+            long slot = slots.get(index);
+            boolean current = slot != EMPTY && (slot >>> VALUE_BITS) == tag;
+            if (current && (slot & VALUE_MASK) >= clamped) {
+                return;
+            }
+            if (slots.compareAndSet(index, slot, (tag << VALUE_BITS) | clamped)) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Sums the buckets of the most recent window, including the current,
+     * partly filled bucket.
+     * 
+     * @param nowMs the current time in milliseconds
+     * @param windowMs the window length, rounded up to whole buckets
+     * @return the sum over the window
+     * @throws IllegalArgumentException if the window is not positive or
+     *         longer than the series
+     */
+    public long sum(long nowMs, long windowMs) {
+        long newest = nowMs / bucketWidthMs;
+        long total = 0;
+        for (long epoch = newest - bucketsIn(windowMs) + 1; epoch <= newest; epoch++) {
+            total += valueAt(epoch);
+        }
+        return total;
+    }
+    
+    /**
+     * Gets the largest bucket value of the most recent window.
+     * 
+     * @param nowMs the current time in milliseconds
+     * @param windowMs the window length, rounded up to whole buckets
+     * @return the maximum over the window
+     * @throws IllegalArgumentException if the window is not positive or
+     *         longer than the series
+     */
+    public long max(long nowMs, long windowMs) {
+        long newest = nowMs / bucketWidthMs;
+        long max = 0;
+        for (long epoch = newest - bucketsIn(windowMs) + 1; epoch <= newest; epoch++) {
+            max = Math.max(max, valueAt(epoch));
+        }
+        return max;
+    }
+    
+    /**
+     * Gets the average rate per second over the most recent window. The
+     * current bucket counts as elapsed only up to nowMs.
+     * 
+     * @param nowMs the current time in milliseconds
+     * @param windowMs the window length, rounded up to whole buckets
+     * @return the summed value per second
+     * @throws IllegalArgumentException if the window is not positive or
+     *         longer than the series
+     */
+    public double ratePerSecond(long nowMs, long windowMs) {
+        int buckets = bucketsIn(windowMs);
+        long elapsedMs = (buckets - 1) * bucketWidthMs + nowMs % bucketWidthMs + 1;
+        return sum(nowMs, windowMs) * 1000.0 / elapsedMs;
+    }
+    
+    /**
+     * Copies the buckets of the whole series into an array, oldest first and
+     * the current bucket last.
+     * 
+     * @param nowMs the current time in milliseconds
+     * @param target the array to fill; at most its length buckets are copied
+     * @return the number of buckets copied
+     */
+    public int copyBuckets(long nowMs, long[] target) {
+        int count = Math.min(bucketCount, target.length);
+        long oldest = nowMs / bucketWidthMs - count + 1;
+        for (int i = 0; i < count; i++) {
+            target[i] = valueAt(oldest + i);
+        }
+        return count;
+    }
+    
+    /**
+     * Empties every bucket.
+     */
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, EMPTY);
+        }
+    }
+    
+    /**
+     * Gets the time covered by one bucket.
+     * 
+     * @return the bucket width in milliseconds
+     */
+    public long getBucketWidthMs() {
+        return bucketWidthMs;
+    }
+    
+    /**
+     * Gets the number of buckets kept.
+     * 
+     * @return the bucket count
+     */
+    public int getBucketCount() {
+        return bucketCount;
+    }
+    
+    /**
+     * Reads a bucket, adding up the rings whose slot holds that epoch.
+     */
+    private long valueAt(long epoch) {
+        int index = indexOf(epoch);
+        long tag = epoch & EPOCH_MASK;
+        long value = 0;
+        for (int stripe = 0; stripe <= stripeMask; stripe++) {
+            long slot = slots.get(ringOf(stripe) + index);
+            if (slot != EMPTY && (slot >>> VALUE_BITS) == tag) {
+                value += slot & VALUE_MASK;
+            }
+        }
+        return value;
+    }
+    
+    /**
+     * Gets the index of the first slot of a stripe's ring.
+     */
+    private int ringOf(int stripe) {
+        return PADDING + stripe * ringStride;
+    }
+    
+    /**
+     * Maps an epoch to its slot within a ring.
+     */
+    private int indexOf(long epoch) {
+        return (int) Math.floorMod(epoch, (long) bucketCount);
+    }
+    
+    /**
+     * Converts a window length into a number of buckets.
+     */
+    private int bucketsIn(long windowMs) {
+        if (windowMs <= 0 || windowMs > bucketWidthMs * bucketCount) {
+            throw new IllegalArgumentException("Window must be between 1 and "
+                                               + bucketWidthMs * bucketCount + " ms");
+        }
+        return (int) ((windowMs + bucketWidthMs - 1) / bucketWidthMs);
+    }
+}
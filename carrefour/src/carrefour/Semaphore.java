@@ -1,18 +1,78 @@
 package carrefour;
 
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
 
 /**
  * Custom semaphore implementation for thread synchronization.
  * Uses Dijkstra's P (wait) and V (signal) operations.
  * 
+ * <p>Permits are held in a single CAS-updated state word and blocked threads
+ * are parked in a FIFO wait queue. A V() unparks only the longest waiting
+ * thread, and a P() never barges ahead of threads already queued, so permits
+ * are granted in strict arrival order.
+ * 
+ * <p>Every acquire that has to block is reported to Java Flight Recorder as a
+ * {@link SemaphoreWaitEvent} carrying the semaphore name and the time spent
+ * blocked. Acquires that find a permit free never create an event.
+ * 
  * @author PC-DELL
  */
 public class Semaphore {
-    private int count;
+    private final Sync sync;
     private final String name;
-    private static final Logger LOGGER = Logger.getLogger(Semaphore.class.getName());
+    
+    /**
+     * Fair synchronizer holding the permit count as its state.
+     */
+    private static final class Sync extends AbstractQueuedSynchronizer {
+        private static final long serialVersionUID = 1L;
+        
+        Sync(int permits) {
+            setState(permits);
+        }
+        
+        int getPermits() {
+            return getState();
+        }
+        
+        int drainPermits() {
+            for (;;) {
+                int current = getState();
+                if (current == 0 || compareAndSetState(current, 0)) {
+                    return current;
+                }
+            }
+        }
+        
+        @Override
+        protected int tryAcquireShared(int acquires) {
+            for (;;) {
+                if (hasQueuedPredecessors()) {
+                    return -1;
+                }
+                int available = getState();
+                int remaining = available - acquires;
+                if (remaining < 0 || compareAndSetState(available, remaining)) {
+                    return remaining;
+                }
+            }
+        }
+        
+        @Override
+        protected boolean tryReleaseShared(int releases) {
+            for (;;) {
+                int current = getState();
+                int next = current + releases;
+                if (next < current) {
+                    throw new Error("Maximum permit count exceeded");
+                }
+                if (compareAndSetState(current, next)) {
+                    return true;
+                }
+            }
+        }
+    }
     
     /**
      * Creates a new semaphore with the specified initial count.
@@ -25,33 +85,120 @@ public class Semaphore {
         if (initialCount < 0) {
             throw new IllegalArgumentException("Initial count must be non-negative");
         }
-        this.count = initialCount;
+        this.sync = new Sync(initialCount);
         this.name = name;
     }
     
     /**
      * P operation (wait/proberen) - decrements the semaphore count.
      * If count is 0, the thread blocks until another thread calls V().
+     * Interrupts do not abort the wait; the interrupt status is preserved.
      */
-    public synchronized void P() {
-        while (count == 0) {
-            try {
-                wait();
-            } catch (InterruptedException ex) {
-                Thread.currentThread().interrupt();
-                LOGGER.log(Level.SEVERE, "Semaphore " + name + " interrupted", ex);
-            }
+    public void P() {
+        acquireUninterruptibly(1);
+    }
+    
+    /**
+     * Bulk P operation - takes the given number of permits at once.
+     * Blocks until all of them are available; like P() it ignores interrupts.
+     * 
+     * @param permits the number of permits to take (must be >= 0)
+     * @throws IllegalArgumentException if permits is negative
+     */
+    public void P(int permits) {
+        checkPermits(permits);
+        acquireUninterruptibly(permits);
+    }
+    
+    /**
+     * Interruptible P operation. Unlike P(), an interrupt aborts the wait
+     * and is reported to the caller, which then holds no permit.
+     * 
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        acquireInterruptibly(1);
+    }
+    
+    /**
+     * Interruptible bulk P operation.
+     * 
+     * @param permits the number of permits to take (must be >= 0)
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws IllegalArgumentException if permits is negative
+     */
+    public void acquire(int permits) throws InterruptedException {
+        checkPermits(permits);
+        acquireInterruptibly(permits);
+    }
+    
+    /**
+     * Non-blocking P operation. Succeeds only if a permit is free and no
+     * other thread is already queued for one, so it never breaks FIFO order.
+     * 
+     * @return true if a permit was taken
+     */
+    public boolean tryP() {
+        return sync.tryAcquireShared(1) >= 0;
+    }
+    
+    /**
+     * Timed P operation - waits at most the given time for a permit.
+     * 
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return true if a permit was taken, false if the timeout elapsed
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public boolean tryP(long timeout, TimeUnit unit) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (sync.tryAcquireShared(1) >= 0) {
+            return true;
+        }
+        SemaphoreWaitEvent event = new SemaphoreWaitEvent();
+        event.begin();
+        boolean acquired = false;
+        try {
+            acquired = sync.tryAcquireSharedNanos(1, unit.toNanos(timeout));
+            return acquired;
+        } finally {
+            commitWait(event, 1, acquired);
         }
-        count--;
     }
     
     /**
      * V operation (signal/verhogen) - increments the semaphore count.
      * Wakes up one waiting thread if any.
      */
-    public synchronized void V() {
-        count++;
-        notifyAll();
+    public void V() {
+        sync.releaseShared(1);
+    }
+    
+    /**
+     * Bulk V operation - returns the given number of permits in a single
+     * update, waking as many queued threads as the permits can satisfy.
+     * 
+     * @param permits the number of permits to return (must be >= 0)
+     * @throws IllegalArgumentException if permits is negative
+     */
+    public void V(int permits) {
+        checkPermits(permits);
+        if (permits > 0) {
+            sync.releaseShared(permits);
+        }
+    }
+    
+    /**
+     * Takes every free permit at once without waiting. Unlike P(), it does
+     * not queue behind blocked threads, so it withdraws permits that nobody
+     * has claimed yet.
+     * 
+     * @return the number of permits taken
+     */
+    public int drainPermits() {
+        return sync.drainPermits();
     }
     
     /**
@@ -59,8 +206,73 @@ public class Semaphore {
      * 
      * @return the current count
      */
-    public synchronized int getCount() {
-        return count;
+    public int getCount() {
+        return sync.getPermits();
+    }
+    
+    /**
+     * Takes permits, ignoring interrupts, and records the wait if it blocked.
+     */
+    private void acquireUninterruptibly(int permits) {
+        if (sync.tryAcquireShared(permits) >= 0) {
+            return;
+        }
+        SemaphoreWaitEvent event = new SemaphoreWaitEvent();
+        event.begin();
+        sync.acquireShared(permits);
+        commitWait(event, permits, true);
+    }
+    
+    /**
+     * Takes permits, aborting on interrupt, and records the wait if it blocked.
+     */
+    private void acquireInterruptibly(int permits) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (sync.tryAcquireShared(permits) >= 0) {
+            return;
+        }
+        SemaphoreWaitEvent event = new SemaphoreWaitEvent();
+        event.begin();
+        boolean acquired = false;
+        try {
+            sync.acquireSharedInterruptibly(permits);
+            acquired = true;
+        } finally {
+            commitWait(event, permits, acquired);
+        }
+    }
+    
+    /**
+     * Ends a wait event and commits it if it passes the recording threshold.
+     */
+    private void commitWait(SemaphoreWaitEvent event, int permits, boolean acquired) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.semaphore = name;
+            event.permits = permits;
+            event.acquired = acquired;
+            event.commit();
+        }
+    }
+    
+    /**
+     * Validates a permit count argument.
+     */
+    private static void checkPermits(int permits) {
+        if (permits < 0) {
+            throw new IllegalArgumentException("Permit count must be non-negative");
+        }
+    }
+    
+    /**
+     * Gets an estimate of the number of threads waiting for permits.
+     * 
+     * @return the number of queued threads
+     */
+    public int getQueueLength() {
+        return sync.getQueueLength();
     }
     
     /**
@@ -71,5 +283,4 @@ public class Semaphore {
     public String getName() {
         return name;
     }
-}  
-
+}
@@ -0,0 +1,30 @@
+package carrefour;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event for a P operation that had to block. Uncontended
+ * acquires take the fast path and emit nothing.
+ * 
+ * @author PC-DELL
+ */
+@Name("carrefour.SemaphoreWait")
+@Label("Semaphore Wait")
+@Category({"Carrefour", "Synchronization"})
+@Description("A thread blocked in Semaphore.P until permits became available")
+@Threshold("1 ms")
+class SemaphoreWaitEvent extends jdk.jfr.Event {
+    @Label("Semaphore")
+    String semaphore;
+    
+    @Label("Permits")
+    int permits;
+    
+    @Label("Acquired")
+    @Description("False if the wait was interrupted or timed out")
+    boolean acquired;
+}
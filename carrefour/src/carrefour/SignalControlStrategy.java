@@ -0,0 +1,72 @@
+package carrefour;
+
+import java.util.Locale;
+
+/**
+ * Decides when the green phase ends. The light cycle asks the strategy at
+ * regular intervals while a phase is green, passing the queues of both
+ * approaches, and switches the lights when it answers true.
+ * 
+ * <p>Implementations keep per-phase state and are used by a single thread.
+ * 
+ * @author PC-DELL
+ */
+public interface SignalControlStrategy {
+    /**
+     * Gets how long to wait between two decisions.
+     * 
+     * @return the decision interval in milliseconds
+     */
+    long getDecisionIntervalMs();
+    
+    /**
+     * Gets the longest a green normally lasts while the other approach has
+     * vehicles waiting, for countdowns and cycle-length estimates.
+     * 
+     * @return the maximum green in milliseconds
+     */
+    long getMaxGreenMs();
+    
+    /**
+     * Called when a new phase turns green.
+     * 
+     * @param lightState 1 for vertical green, 2 for horizontal green
+     */
+    void phaseStarted(int lightState);
+    
+    /**
+     * Decides whether the current green should end now.
+     * 
+     * @param lightState 1 for vertical green, 2 for horizontal green
+     * @param greenElapsedMs time since the phase turned green
+     * @param greenQueue vehicles waiting or crossing on the green approach
+     * @param redQueue vehicles waiting on the red approach
+     * @return true to switch the lights
+     */
+    boolean shouldSwitch(int lightState, long greenElapsedMs, int greenQueue, int redQueue);
+    
+    /**
+     * Creates the strategy selected by {@code carrefour.signal.strategy}:
+     * {@code fixed} (default) switches every {@code fixedGreenMs}, and
+     * {@code adaptive} uses {@code carrefour.signal.minGreenMs},
+     * {@code carrefour.signal.maxGreenMs} and {@code carrefour.signal.gapMs}.
+     * 
+     * @param fixedGreenMs green time of the fixed-time strategy
+     * @return a new strategy
+     * @throws IllegalArgumentException if a property is invalid
+     */
+    static SignalControlStrategy fromSystemProperties(long fixedGreenMs) {
+        String name = System.getProperty("carrefour.signal.strategy", "fixed").trim().toLowerCase(Locale.ROOT);
+        switch (name) {
+            case "fixed":
+                return new FixedTimeSignalStrategy(fixedGreenMs);
+            case "adaptive":
+                return new AdaptiveSignalStrategy(
+                    Long.getLong("carrefour.signal.minGreenMs", AdaptiveSignalStrategy.DEFAULT_MIN_GREEN_MS),
+                    Long.getLong("carrefour.signal.maxGreenMs", AdaptiveSignalStrategy.DEFAULT_MAX_GREEN_MS),
+                    Long.getLong("carrefour.signal.gapMs", AdaptiveSignalStrategy.DEFAULT_GAP_MS));
+            default:
+                throw new IllegalArgumentException("Unknown signal strategy " + name);
+        }
+    }
+}
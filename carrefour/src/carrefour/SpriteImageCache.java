@@ -0,0 +1,114 @@
+package carrefour;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.imageio.ImageIO;
+
+/**
+ * Process-wide cache of decoded and pre-scaled images.
+ * 
+ * <p>Each image is read once, from the classpath (and therefore from the jar)
+ * or, failing that, from the working directory. It is then scaled once into
+ * an image compatible with the screen for every requested size. All sprites
+ * of the same kind share that image, so spawning a vehicle decodes nothing
+ * and drawing one copies pixels without scaling. Images that cannot be
+ * loaded are logged once and reported as null.
+ * 
+ * @author PC-DELL
+ */
+public final class SpriteImageCache {
+    private static final Logger LOGGER = Logger.getLogger(SpriteImageCache.class.getName());
+    private static final BufferedImage MISSING = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+    
+    private static final ConcurrentHashMap<String, BufferedImage> SOURCES = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, BufferedImage> SCALED = new ConcurrentHashMap<>();
+    
+    private SpriteImageCache() {
+    }
+    
+    /**
+     * Gets an image scaled to the given size.
+     * 
+     * @param path resource path of the image, e.g. {@code resources/taxi.png}
+     * @param width target width in pixels
+     * @param height target height in pixels
+     * @return the shared scaled image, or null if the image could not be loaded
+     */
+    public static BufferedImage getImage(String path, int width, int height) {
+        BufferedImage image = SCALED.computeIfAbsent(path + '@' + width + 'x' + height,
+            key -> scale(getSource(path), width, height));
+        return image == MISSING ? null : image;
+    }
+    
+    /**
+     * Gets the decoded source image, loading it on first use.
+     */
+    private static BufferedImage getSource(String path) {
+        return SOURCES.computeIfAbsent(path, SpriteImageCache::load);
+    }
+    
+    /**
+     * Reads an image from the classpath, or from the file system as a fallback.
+     */
+    private static BufferedImage load(String path) {
+        try {
+            BufferedImage image = null;
+            URL resource = SpriteImageCache.class.getClassLoader().getResource(path);
+            if (resource != null) {
+                image = ImageIO.read(resource);
+            } else {
+                File file = new File(path);
+                if (file.exists()) {
+                    image = ImageIO.read(file);
+                }
+            }
+            if (image != null) {
+                return image;
+            }
+            LOGGER.log(Level.WARNING, "Image not found: {0}", path);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Could not load image " + path, ex);
+        }
+        return MISSING;
+    }
+    
+    /**
+     * Scales a source image into a new image compatible with the display.
+     */
+    private static BufferedImage scale(BufferedImage source, int width, int height) {
+        if (source == MISSING || width <= 0 || height <= 0) {
+            return MISSING;
+        }
+        int transparency = source.getColorModel().getTransparency();
+        BufferedImage target;
+        if (GraphicsEnvironment.isHeadless()) {
+            target = new BufferedImage(width, height, transparency == Transparency.OPAQUE
+                ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        } else {
+            target = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration()
+                .createCompatibleImage(width, height, transparency);
+        }
+        
+        Graphics2D g2d = target.createGraphics();
+        try {
+            g2d.setComposite(AlphaComposite.Src);
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                                 RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g2d.dispose();
+        }
+        return target;
+    }
+}
@@ -18,6 +18,9 @@ import javax.swing.Timer;
  */
 public class StatisticsPanel extends JPanel {
     private static final int UPDATE_INTERVAL_MS = 100;
+    private static final long THROUGHPUT_SHORT_WINDOW_MS = 10000;
+    private static final long THROUGHPUT_MEDIUM_WINDOW_MS = 60000;
+    private static final long THROUGHPUT_LONG_WINDOW_MS = 300000;
     private static final Font HEADER_FONT = new Font("Arial", Font.BOLD, 14);
     private static final Font VALUE_FONT = new Font("Arial", Font.PLAIN, 12);
     private static final Color PANEL_BACKGROUND = new Color(240, 240, 240);
@@ -35,11 +38,15 @@ public class StatisticsPanel extends JPanel {
     private JLabel avgVerticalWaitLabel;
     private JLabel avgHorizontalWaitLabel;
     private JLabel overallAvgWaitLabel;
+    private JLabel verticalPercentileLabel;
+    private JLabel horizontalPercentileLabel;
+    private JLabel throughputLabel;
+    private JLabel maxQueueLabel;
     private JLabel lightStatusLabel;
     private JLabel countdownLabel;
     
     private Timer updateTimer;
-    private long lastLightChangeTime;
+    private volatile long lastLightChangeTime; // Written by the controller thread
     private int currentCountdown;
     
     /**
@@ -52,7 +59,7 @@ public class StatisticsPanel extends JPanel {
         this.statisticsTracker = statisticsTracker;
         this.trafficController = trafficController;
         this.lastLightChangeTime = System.currentTimeMillis();
-        this.currentCountdown = TrafficController.getTrafficLightChangeInterval() / 1000;
+        this.currentCountdown = (int) (getMaxGreenMs() / 1000);
         
         initializePanel();
         startUpdateTimer();
@@ -95,12 +102,24 @@ public class StatisticsPanel extends JPanel {
         avgHorizontalWaitLabel = createStatLabel("Horizontal Avg: 0.0 ms", gbc, 9);
         overallAvgWaitLabel = createStatLabel("Overall Avg: 0.0 ms", gbc, 10);
         
+        // Section: Wait Time Percentiles
+        addSectionHeader("Wait Time p50 / p99 / max", gbc, 11);
+        
+        verticalPercentileLabel = createStatLabel("Vertical: 0 / 0 / 0 ms", gbc, 12);
+        horizontalPercentileLabel = createStatLabel("Horizontal: 0 / 0 / 0 ms", gbc, 13);
+        
+        // Section: Recent Activity
+        addSectionHeader("Recent Activity", gbc, 14);
+        
+        throughputLabel = createStatLabel("Crossed/s 10s/60s/5m: 0.0 / 0.0 / 0.0", gbc, 15);
+        maxQueueLabel = createStatLabel("Max Queue (last cycle): 0 / 0", gbc, 16);
+        
         // Section: Traffic Light Status
-        addSectionHeader("Traffic Light Status", gbc, 11);
+        addSectionHeader("Traffic Light Status", gbc, 17);
         
-        lightStatusLabel = createStatLabel("Status: Vertical GREEN", gbc, 12);
+        lightStatusLabel = createStatLabel("Status: Vertical GREEN", gbc, 18);
         lightStatusLabel.setForeground(Color.GREEN);
-        countdownLabel = createStatLabel("Countdown: " + currentCountdown + "s", gbc, 13);
+        countdownLabel = createStatLabel("Countdown: " + currentCountdown + "s", gbc, 19);
         countdownLabel.setForeground(Color.RED);
     }
     
@@ -151,28 +170,65 @@ public class StatisticsPanel extends JPanel {
      * Updates all statistics displays.
      */
     private void updateStatistics() {
+        // This timer is the GUI's periodic sampler of the queue length history
+        statisticsTracker.sampleQueueLengths();
+        
+        // One coherent view, so the derived values agree with the counts
+        StatisticsSnapshot snapshot = statisticsTracker.snapshot();
+        
         // Update vehicle counts
-        totalCrossedLabel.setText("Total Crossed: " + statisticsTracker.getTotalVehiclesCrossed());
-        verticalCrossedLabel.setText("Vertical Crossed: " + statisticsTracker.getVerticalVehiclesCrossed());
-        horizontalCrossedLabel.setText("Horizontal Crossed: " + statisticsTracker.getHorizontalVehiclesCrossed());
+        totalCrossedLabel.setText("Total Crossed: " + snapshot.getTotalVehiclesCrossed());
+        verticalCrossedLabel.setText("Vertical Crossed: " + snapshot.getVerticalVehiclesCrossed());
+        horizontalCrossedLabel.setText("Horizontal Crossed: " + snapshot.getHorizontalVehiclesCrossed());
         
         // Update waiting counts
-        verticalWaitingLabel.setText("Vertical Waiting: " + statisticsTracker.getVerticalVehiclesWaiting());
-        horizontalWaitingLabel.setText("Horizontal Waiting: " + statisticsTracker.getHorizontalVehiclesWaiting());
+        verticalWaitingLabel.setText("Vertical Waiting: " + snapshot.getVerticalVehiclesWaiting());
+        horizontalWaitingLabel.setText("Horizontal Waiting: " + snapshot.getHorizontalVehiclesWaiting());
         
         // Update wait times
-        double avgVertical = statisticsTracker.getAverageVerticalWaitTime();
-        double avgHorizontal = statisticsTracker.getAverageHorizontalWaitTime();
-        double avgOverall = statisticsTracker.getOverallAverageWaitTime();
+        double avgVertical = snapshot.getAverageVerticalWaitTime();
+        double avgHorizontal = snapshot.getAverageHorizontalWaitTime();
+        double avgOverall = snapshot.getOverallAverageWaitTime();
         
         avgVerticalWaitLabel.setText(String.format("Vertical Avg: %.1f ms", avgVertical));
         avgHorizontalWaitLabel.setText(String.format("Horizontal Avg: %.1f ms", avgHorizontal));
         overallAvgWaitLabel.setText(String.format("Overall Avg: %.1f ms", avgOverall));
         
+        // Update wait time percentiles
+        verticalPercentileLabel.setText("Vertical: "
+            + formatPercentiles(statisticsTracker.getVerticalWaitTimeHistogram()));
+        horizontalPercentileLabel.setText("Horizontal: "
+            + formatPercentiles(statisticsTracker.getHorizontalWaitTimeHistogram()));
+        
+        // Update sliding-window throughput and queue lengths
+        throughputLabel.setText(String.format("Crossed/s 10s/60s/5m: %.1f / %.1f / %.1f",
+            statisticsTracker.getCrossingsPerSecond(THROUGHPUT_SHORT_WINDOW_MS),
+            statisticsTracker.getCrossingsPerSecond(THROUGHPUT_MEDIUM_WINDOW_MS),
+            statisticsTracker.getCrossingsPerSecond(THROUGHPUT_LONG_WINDOW_MS)));
+        long cycleMs = 2 * getMaxGreenMs();
+        maxQueueLabel.setText("Max Queue (last cycle): "
+            + statisticsTracker.getMaxVerticalQueueLength(cycleMs) + " / "
+            + statisticsTracker.getMaxHorizontalQueueLength(cycleMs));
+        
         // Update traffic light status and countdown
         updateTrafficLightStatus();
     }
     
+    /**
+     * Gets the longest green of the controller's strategy, the upper bound
+     * of the countdown.
+     */
+    private long getMaxGreenMs() {
+        return trafficController.getLightCycle().getStrategy().getMaxGreenMs();
+    }
+    
+    /**
+     * Formats the median, p99 and maximum of a histogram.
+     */
+    private static String formatPercentiles(WaitTimeHistogram histogram) {
+        return histogram.getP50() + " / " + histogram.getP99() + " / " + histogram.getMax() + " ms";
+    }
+    
     /**
      * Updates the traffic light status and countdown display.
      */
@@ -181,7 +237,7 @@ public class StatisticsPanel extends JPanel {
         
         long currentTime = System.currentTimeMillis();
         long elapsed = currentTime - lastLightChangeTime;
-        int remaining = (int) ((TrafficController.getTrafficLightChangeInterval() - elapsed) / 1000);
+        int remaining = (int) ((getMaxGreenMs() - elapsed) / 1000);
         
         if (remaining < 0) {
             remaining = 0;
@@ -211,11 +267,12 @@ public class StatisticsPanel extends JPanel {
     }
     
     /**
-     * Notifies that the traffic light has changed.
+     * Notifies that the traffic light has changed. May be called from any
+     * thread; the countdown is refreshed by the next update on the event
+     * dispatch thread.
      */
     public void onTrafficLightChanged() {
         lastLightChangeTime = System.currentTimeMillis();
-        currentCountdown = TrafficController.getTrafficLightChangeInterval() / 1000;
     }
     
     /**
@@ -0,0 +1,200 @@
+package carrefour;
+
+/**
+ * Immutable view of the counters of a {@link StatisticsTracker}, taken by
+ * {@link StatisticsTracker#snapshot()}.
+ * 
+ * <p>Every crossing is either fully included (counted as crossed, no longer
+ * waiting, its wait time added) or not at all, and so is every vehicle that
+ * gave up, so values derived from one
+ * snapshot, like averages, are always consistent with each other.
+ * 
+ * @author PC-DELL
+ */
+public final class StatisticsSnapshot {
+    private final long verticalVehiclesStarted;
+    private final long verticalVehiclesCrossed;
+    private final long totalVerticalWaitTime;
+    private final long verticalVehiclesGaveUp;
+    private final long horizontalVehiclesStarted;
+    private final long horizontalVehiclesCrossed;
+    private final long totalHorizontalWaitTime;
+    private final long horizontalVehiclesGaveUp;
+    
+    /**
+     * Creates a snapshot from raw counter values, with no vehicle having
+     * given up.
+     * 
+     * @param verticalVehiclesStarted vertical vehicles that started waiting
+     * @param verticalVehiclesCrossed vertical vehicles that crossed
+     * @param totalVerticalWaitTime summed wait time of crossed vertical vehicles, in ms
+     * @param horizontalVehiclesStarted horizontal vehicles that started waiting
+     * @param horizontalVehiclesCrossed horizontal vehicles that crossed
+     * @param totalHorizontalWaitTime summed wait time of crossed horizontal vehicles, in ms
+     */
+    public StatisticsSnapshot(long verticalVehiclesStarted, long verticalVehiclesCrossed,
+                              long totalVerticalWaitTime, long horizontalVehiclesStarted,
+                              long horizontalVehiclesCrossed, long totalHorizontalWaitTime) {
+        this(verticalVehiclesStarted, verticalVehiclesCrossed, totalVerticalWaitTime, 0,
+             horizontalVehiclesStarted, horizontalVehiclesCrossed, totalHorizontalWaitTime, 0);
+    }
+    
+    /**
+     * Creates a snapshot from raw counter values.
+     * 
+     * @param verticalVehiclesStarted vertical vehicles that started waiting
+     * @param verticalVehiclesCrossed vertical vehicles that crossed
+     * @param totalVerticalWaitTime summed wait time of crossed vertical vehicles, in ms
+     * @param verticalVehiclesGaveUp vertical vehicles that gave up waiting
+     * @param horizontalVehiclesStarted horizontal vehicles that started waiting
+     * @param horizontalVehiclesCrossed horizontal vehicles that crossed
+     * @param totalHorizontalWaitTime summed wait time of crossed horizontal vehicles, in ms
+     * @param horizontalVehiclesGaveUp horizontal vehicles that gave up waiting
+     */
+    public StatisticsSnapshot(long verticalVehiclesStarted, long verticalVehiclesCrossed,
+                              long totalVerticalWaitTime, long verticalVehiclesGaveUp,
+                              long horizontalVehiclesStarted, long horizontalVehiclesCrossed,
+                              long totalHorizontalWaitTime, long horizontalVehiclesGaveUp) {
+        this.verticalVehiclesStarted = verticalVehiclesStarted;
+        this.verticalVehiclesCrossed = verticalVehiclesCrossed;
+        this.totalVerticalWaitTime = totalVerticalWaitTime;
+        this.verticalVehiclesGaveUp = verticalVehiclesGaveUp;
+        this.horizontalVehiclesStarted = horizontalVehiclesStarted;
+        this.horizontalVehiclesCrossed = horizontalVehiclesCrossed;
+        this.totalHorizontalWaitTime = totalHorizontalWaitTime;
+        this.horizontalVehiclesGaveUp = horizontalVehiclesGaveUp;
+    }
+    
+    /**
+     * Gets the number of vertical vehicles that have started waiting.
+     * 
+     * @return the count
+     */
+    public long getVerticalVehiclesStarted() {
+        return verticalVehiclesStarted;
+    }
+    
+    /**
+     * Gets the number of horizontal vehicles that have started waiting.
+     * 
+     * @return the count
+     */
+    public long getHorizontalVehiclesStarted() {
+        return horizontalVehiclesStarted;
+    }
+    
+    /**
+     * Gets the number of vertical vehicles that have crossed.
+     * 
+     * @return the count
+     */
+    public long getVerticalVehiclesCrossed() {
+        return verticalVehiclesCrossed;
+    }
+    
+    /**
+     * Gets the number of horizontal vehicles that have crossed.
+     * 
+     * @return the count
+     */
+    public long getHorizontalVehiclesCrossed() {
+        return horizontalVehiclesCrossed;
+    }
+    
+    /**
+     * Gets the total number of vehicles that have crossed.
+     * 
+     * @return the total count
+     */
+    public long getTotalVehiclesCrossed() {
+        return verticalVehiclesCrossed + horizontalVehiclesCrossed;
+    }
+    
+    /**
+     * Gets the number of vertical vehicles that gave up waiting.
+     * 
+     * @return the count
+     */
+    public long getVerticalVehiclesGaveUp() {
+        return verticalVehiclesGaveUp;
+    }
+    
+    /**
+     * Gets the number of horizontal vehicles that gave up waiting.
+     * 
+     * @return the count
+     */
+    public long getHorizontalVehiclesGaveUp() {
+        return horizontalVehiclesGaveUp;
+    }
+    
+    /**
+     * Gets the number of vertical vehicles waiting.
+     * 
+     * @return the count
+     */
+    public long getVerticalVehiclesWaiting() {
+        return verticalVehiclesStarted - verticalVehiclesCrossed - verticalVehiclesGaveUp;
+    }
+    
+    /**
+     * Gets the number of horizontal vehicles waiting.
+     * 
+     * @return the count
+     */
+    public long getHorizontalVehiclesWaiting() {
+        return horizontalVehiclesStarted - horizontalVehiclesCrossed - horizontalVehiclesGaveUp;
+    }
+    
+    /**
+     * Gets the summed wait time of the vertical vehicles that have crossed.
+     * 
+     * @return the total wait time in milliseconds
+     */
+    public long getTotalVerticalWaitTime() {
+        return totalVerticalWaitTime;
+    }
+    
+    /**
+     * Gets the summed wait time of the horizontal vehicles that have crossed.
+     * 
+     * @return the total wait time in milliseconds
+     */
+    public long getTotalHorizontalWaitTime() {
+        return totalHorizontalWaitTime;
+    }
+    
+    /**
+     * Gets the average wait time for vertical vehicles in milliseconds.
+     * 
+     * @return the average wait time, or 0 if no vehicles have crossed
+     */
+    public double getAverageVerticalWaitTime() {
+        return average(totalVerticalWaitTime, verticalVehiclesCrossed);
+    }
+    
+    /**
+     * Gets the average wait time for horizontal vehicles in milliseconds.
+     * 
+     * @return the average wait time, or 0 if no vehicles have crossed
+     */
+    public double getAverageHorizontalWaitTime() {
+        return average(totalHorizontalWaitTime, horizontalVehiclesCrossed);
+    }
+    
+    /**
+     * Gets the overall average wait time in milliseconds.
+     * 
+     * @return the average wait time, or 0 if no vehicles have crossed
+     */
+    public double getOverallAverageWaitTime() {
+        return average(totalVerticalWaitTime + totalHorizontalWaitTime, getTotalVehiclesCrossed());
+    }
+    
+    /**
+     * Divides a total by a count, returning 0 for an empty count.
+     */
+    private static double average(long total, long count) {
+        return count == 0 ? 0 : (double) total / count;
+    }
+}
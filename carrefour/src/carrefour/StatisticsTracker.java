@@ -1,30 +1,108 @@
 package carrefour;
 
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
 
 /**
  * Thread-safe statistics tracker for the traffic simulation.
- * Tracks vehicle counts, wait times, and other metrics.
+ * Tracks vehicle counts, wait times, and other metrics. Besides running
+ * totals, each direction keeps a {@link WaitTimeHistogram} so that tail
+ * latencies (p99, max) can be reported alongside the averages.
+ * 
+ * <p>Counters are striped: each thread updates one of several stripes,
+ * picked from its thread id, so vehicles crossing at the same time rarely
+ * touch the same cache line. Each stripe is padded to its own cache lines and
+ * guarded by a sequence number used as a seqlock. A writer makes the sequence
+ * odd, updates every counter of one event, and makes it even again; if the
+ * stripe is busy it moves on to the next one instead of waiting.
+ * {@link #snapshot()} reads each stripe between two equal, even sequence
+ * numbers, so no event is ever seen half-recorded. The scalar getters only
+ * sum the slots they need; callers that need several values from the same
+ * moment should take one snapshot instead.
+ * 
+ * <p>Recent history is kept in {@link RollingTimeSeries} rings that are all
+ * rolled by the tracker's clock: crossings per second over the last five
+ * minutes, and the queue length of each direction over the last minute. The
+ * crossing series and the wait time histograms are striped per thread too.
+ * The queue lengths are sampled through {@link #sampleQueueLengths()} by a
+ * periodic task of the application, never by the vehicle threads, since a
+ * sample takes a full snapshot.
+ * 
+ * <p>Each {@link VehicleStage} of a trip has its own latency histogram, in
+ * microseconds, so waits on the lane permits can be told apart from waits on
+ * the traffic light permits.
  * 
  * @author PC-DELL
  */
 public class StatisticsTracker {
-    private final AtomicInteger verticalVehiclesCrossed = new AtomicInteger(0);
-    private final AtomicInteger horizontalVehiclesCrossed = new AtomicInteger(0);
-    private final AtomicInteger verticalVehiclesWaiting = new AtomicInteger(0);
-    private final AtomicInteger horizontalVehiclesWaiting = new AtomicInteger(0);
-    private final AtomicLong totalVerticalWaitTime = new AtomicLong(0);
-    private final AtomicLong totalHorizontalWaitTime = new AtomicLong(0);
-    private final AtomicInteger verticalVehicleCount = new AtomicInteger(0);
-    private final AtomicInteger horizontalVehicleCount = new AtomicInteger(0);
+    // Slots of one stripe
+    private static final int SEQUENCE = 0;
+    private static final int VERTICAL_STARTED = 1;
+    private static final int VERTICAL_CROSSED = 2;
+    private static final int VERTICAL_WAIT_TIME = 3;
+    private static final int HORIZONTAL_STARTED = 4;
+    private static final int HORIZONTAL_CROSSED = 5;
+    private static final int HORIZONTAL_WAIT_TIME = 6;
+    private static final int VERTICAL_GAVE_UP = 7;
+    private static final int HORIZONTAL_GAVE_UP = 8;
+    private static final int LAST_SLOT = HORIZONTAL_GAVE_UP;
+    
+    // 16 longs = 128 bytes, enough to keep stripes off each other's cache
+    // line pairs (adjacent-line prefetch)
+    private static final int STRIPE_STRIDE = 16;
+    private static final int MAX_STRIPES = 64;
+    
+    private static final long CROSSING_BUCKET_MS = 1000;
+    private static final int CROSSING_BUCKETS = 300; // 5 minutes
+    private static final long QUEUE_BUCKET_MS = 250;
+    private static final int QUEUE_BUCKETS = 240; // 1 minute
+    
+    private final int stripeMask;
+    private final AtomicLongArray stripes;
+    private final LongSupplier clock;
+    private final RollingTimeSeries verticalCrossings =
+        new RollingTimeSeries(CROSSING_BUCKET_MS, CROSSING_BUCKETS);
+    private final RollingTimeSeries horizontalCrossings =
+        new RollingTimeSeries(CROSSING_BUCKET_MS, CROSSING_BUCKETS);
+    private final RollingTimeSeries verticalQueueLength =
+        new RollingTimeSeries(QUEUE_BUCKET_MS, QUEUE_BUCKETS);
+    private final RollingTimeSeries horizontalQueueLength =
+        new RollingTimeSeries(QUEUE_BUCKET_MS, QUEUE_BUCKETS);
+    private final WaitTimeHistogram[] stageLatencyHistograms =
+        new WaitTimeHistogram[VehicleStage.values().length];
+    private final WaitTimeHistogram verticalWaitTimeHistogram = new WaitTimeHistogram();
+    private final WaitTimeHistogram horizontalWaitTimeHistogram = new WaitTimeHistogram();
+    
+    /**
+     * Creates a tracker striped for the number of available processors,
+     * whose time series follow the wall clock.
+     */
+    public StatisticsTracker() {
+        this(System::currentTimeMillis);
+    }
+    
+    /**
+     * Creates a tracker whose time series follow the given clock.
+     * 
+     * @param clock supplies the current time in milliseconds
+     */
+    public StatisticsTracker(LongSupplier clock) {
+        this.clock = clock;
+        for (int i = 0; i < stageLatencyHistograms.length; i++) {
+            stageLatencyHistograms[i] = new WaitTimeHistogram();
+        }
+        int stripeCount = Stripes.countFor(MAX_STRIPES);
+        this.stripeMask = stripeCount - 1;
+        // One extra stride in front keeps stripe 0 off the array header
+        this.stripes = new AtomicLongArray((stripeCount + 1) * STRIPE_STRIDE);
+    }
     
     /**
      * Records that a vertical vehicle has started waiting.
      */
     public void verticalVehicleStarted() {
-        verticalVehicleCount.incrementAndGet();
-        verticalVehiclesWaiting.incrementAndGet();
+        record(VERTICAL_STARTED, 0, 1, 0);
     }
     
     /**
@@ -33,17 +111,24 @@ public class StatisticsTracker {
      * @param waitTimeMs the time the vehicle waited in milliseconds
      */
     public void verticalVehicleCrossed(long waitTimeMs) {
-        verticalVehiclesCrossed.incrementAndGet();
-        verticalVehiclesWaiting.decrementAndGet();
-        totalVerticalWaitTime.addAndGet(waitTimeMs);
+        record(VERTICAL_CROSSED, VERTICAL_WAIT_TIME, 1, waitTimeMs);
+        verticalWaitTimeHistogram.record(waitTimeMs);
+        verticalCrossings.add(clock.getAsLong(), 1);
+    }
+    
+    /**
+     * Records that a vertical vehicle has given up waiting and left without
+     * crossing.
+     */
+    public void verticalVehicleGaveUp() {
+        record(VERTICAL_GAVE_UP, 0, 1, 0);
     }
     
     /**
      * Records that a horizontal vehicle has started waiting.
      */
     public void horizontalVehicleStarted() {
-        horizontalVehicleCount.incrementAndGet();
-        horizontalVehiclesWaiting.incrementAndGet();
+        record(HORIZONTAL_STARTED, 0, 1, 0);
     }
     
     /**
@@ -52,9 +137,186 @@ public class StatisticsTracker {
      * @param waitTimeMs the time the vehicle waited in milliseconds
      */
     public void horizontalVehicleCrossed(long waitTimeMs) {
-        horizontalVehiclesCrossed.incrementAndGet();
-        horizontalVehiclesWaiting.decrementAndGet();
-        totalHorizontalWaitTime.addAndGet(waitTimeMs);
+        record(HORIZONTAL_CROSSED, HORIZONTAL_WAIT_TIME, 1, waitTimeMs);
+        horizontalWaitTimeHistogram.record(waitTimeMs);
+        horizontalCrossings.add(clock.getAsLong(), 1);
+    }
+    
+    /**
+     * Records that a horizontal vehicle has given up waiting and left
+     * without crossing.
+     */
+    public void horizontalVehicleGaveUp() {
+        record(HORIZONTAL_GAVE_UP, 0, 1, 0);
+    }
+    
+    /**
+     * Adds to one or two counters of a stripe as a single event.
+     * 
+     * @param countSlot the counter to add countDelta to
+     * @param sumSlot the counter to add sumDelta to, or 0 for none
+     */
+    private void record(int countSlot, int sumSlot, long countDelta, long sumDelta) {
+        int stripe = Stripes.indexFor(Thread.currentThread().getId(), stripeMask);
+        while (true) {
+            int base = baseOf(stripe);
+            long sequence = stripes.get(base + SEQUENCE);
+            if ((sequence & 1) == 0 && stripes.compareAndSet(base + SEQUENCE, sequence, sequence + 1)) {
+                // Only the sequence holder writes the stripe, so plain
+                // ordered stores are enough; the final store publishes them
+                stripes.lazySet(base + countSlot, stripes.get(base + countSlot) + countDelta);
+                if (sumSlot != 0) {
+                    stripes.lazySet(base + sumSlot, stripes.get(base + sumSlot) + sumDelta);
+                }
+                stripes.set(base + SEQUENCE, sequence + 2);
+                return;
+            }
+            // Stripe busy: try the next one rather than wait
+            stripe = (stripe + 1) & stripeMask;
+        }
+    }
+    
+    /**
+     * Records the duration of every stage of one trip from its monotonic
+     * timestamps.
+     * 
+     * @param spawnNanos System.nanoTime when the vehicle was spawned
+     * @param laneAcquiredNanos System.nanoTime when the lane permit was acquired
+     * @param lightAcquiredNanos System.nanoTime when the green light permit was acquired
+     * @param crossingDoneNanos System.nanoTime when the vehicle had crossed
+     * @param exitNanos System.nanoTime when both permits had been released
+     */
+    public void recordStageLatencies(long spawnNanos, long laneAcquiredNanos, long lightAcquiredNanos,
+                                     long crossingDoneNanos, long exitNanos) {
+        recordStageLatency(VehicleStage.LANE_WAIT, laneAcquiredNanos - spawnNanos);
+        recordStageLatency(VehicleStage.LIGHT_WAIT, lightAcquiredNanos - laneAcquiredNanos);
+        recordStageLatency(VehicleStage.CROSSING, crossingDoneNanos - lightAcquiredNanos);
+        recordStageLatency(VehicleStage.EXIT, exitNanos - crossingDoneNanos);
+    }
+    
+    /**
+     * Records the duration of one stage of a trip.
+     * 
+     * @param stage the stage
+     * @param durationNanos the time spent in the stage, in nanoseconds
+     */
+    public void recordStageLatency(VehicleStage stage, long durationNanos) {
+        stageLatencyHistograms[stage.ordinal()].record(TimeUnit.NANOSECONDS.toMicros(durationNanos));
+    }
+    
+    /**
+     * Records the current queue length of both directions in the queue
+     * length series. Call this from one periodic task, at least every
+     * 250 ms (one queue bucket); buckets without a sample read as empty
+     * queues.
+     */
+    public void sampleQueueLengths() {
+        long now = clock.getAsLong();
+        StatisticsSnapshot snapshot = snapshot();
+        verticalQueueLength.recordMax(now, snapshot.getVerticalVehiclesWaiting());
+        horizontalQueueLength.recordMax(now, snapshot.getHorizontalVehiclesWaiting());
+    }
+    
+    /**
+     * Takes a coherent view of all counters.
+     * 
+     * @return the snapshot
+     */
+    public StatisticsSnapshot snapshot() {
+        long[] totals = new long[LAST_SLOT + 1];
+        long[] stripeValues = new long[LAST_SLOT + 1];
+        for (int stripe = 0; stripe <= stripeMask; stripe++) {
+            readStripe(baseOf(stripe), stripeValues);
+            for (int slot = VERTICAL_STARTED; slot <= LAST_SLOT; slot++) {
+                totals[slot] += stripeValues[slot];
+            }
+        }
+        return new StatisticsSnapshot(totals[VERTICAL_STARTED], totals[VERTICAL_CROSSED],
+                                      totals[VERTICAL_WAIT_TIME], totals[VERTICAL_GAVE_UP],
+                                      totals[HORIZONTAL_STARTED], totals[HORIZONTAL_CROSSED],
+                                      totals[HORIZONTAL_WAIT_TIME], totals[HORIZONTAL_GAVE_UP]);
+    }
+    
+    /**
+     * Copies one stripe's counters, retrying until no writer interfered.
+     */
+    private void readStripe(int base, long[] values) {
+        while (true) {
+            long before = stripes.get(base + SEQUENCE);
+            if ((before & 1) == 0) {
+                for (int slot = VERTICAL_STARTED; slot <= LAST_SLOT; slot++) {
+                    values[slot] = stripes.get(base + slot);
+                }
+                if (stripes.get(base + SEQUENCE) == before) {
+                    return;
+                }
+            }
+            Thread.yield();
+        }
+    }
+    
+    /**
+     * Sums one counter over all stripes.
+     */
+    private long sum(int slot) {
+        long total = 0;
+        for (int stripe = 0; stripe <= stripeMask; stripe++) {
+            total += stripes.get(baseOf(stripe) + slot);
+        }
+        return total;
+    }
+    
+    /**
+     * Gets the number of vehicles of one direction that have started but
+     * neither crossed nor given up. Those are summed first: a vehicle
+     * leaving during the sums then only adds to the started count, so the
+     * result is never negative.
+     */
+    private long waiting(int startedSlot, int crossedSlot, int gaveUpSlot) {
+        long left = sum(crossedSlot) + sum(gaveUpSlot);
+        return sum(startedSlot) - left;
+    }
+    
+    /**
+     * Averages the wait time of the crossed vehicles of the given
+     * directions. Each stripe is read under its sequence number, so a
+     * crossing is either counted with its wait time or not at all.
+     */
+    private double averageWaitTime(boolean vertical, boolean horizontal) {
+        long crossed = 0;
+        long waitTime = 0;
+        for (int stripe = 0; stripe <= stripeMask; stripe++) {
+            int base = baseOf(stripe);
+            while (true) {
+                long before = stripes.get(base + SEQUENCE);
+                if ((before & 1) == 0) {
+                    long stripeCrossed = 0;
+                    long stripeWaitTime = 0;
+                    if (vertical) {
+                        stripeCrossed += stripes.get(base + VERTICAL_CROSSED);
+                        stripeWaitTime += stripes.get(base + VERTICAL_WAIT_TIME);
+                    }
+                    if (horizontal) {
+                        stripeCrossed += stripes.get(base + HORIZONTAL_CROSSED);
+                        stripeWaitTime += stripes.get(base + HORIZONTAL_WAIT_TIME);
+                    }
+                    if (stripes.get(base + SEQUENCE) == before) {
+                        crossed += stripeCrossed;
+                        waitTime += stripeWaitTime;
+                        break;
+                    }
+                }
+                Thread.yield();
+            }
+        }
+        return crossed == 0 ? 0 : (double) waitTime / crossed;
+    }
+    
+    /**
+     * Gets the index of a stripe's sequence slot.
+     */
+    private static int baseOf(int stripe) {
+        return (stripe + 1) * STRIPE_STRIDE;
     }
     
     /**
@@ -63,7 +325,7 @@ public class StatisticsTracker {
      * @return the count
      */
     public int getVerticalVehiclesCrossed() {
-        return verticalVehiclesCrossed.get();
+        return (int) sum(VERTICAL_CROSSED);
     }
     
     /**
@@ -72,7 +334,7 @@ public class StatisticsTracker {
      * @return the count
      */
     public int getHorizontalVehiclesCrossed() {
-        return horizontalVehiclesCrossed.get();
+        return (int) sum(HORIZONTAL_CROSSED);
     }
     
     /**
@@ -81,7 +343,7 @@ public class StatisticsTracker {
      * @return the total count
      */
     public int getTotalVehiclesCrossed() {
-        return verticalVehiclesCrossed.get() + horizontalVehiclesCrossed.get();
+        return (int) (sum(VERTICAL_CROSSED) + sum(HORIZONTAL_CROSSED));
     }
     
     /**
@@ -90,7 +352,7 @@ public class StatisticsTracker {
      * @return the count
      */
     public int getVerticalVehiclesWaiting() {
-        return verticalVehiclesWaiting.get();
+        return (int) waiting(VERTICAL_STARTED, VERTICAL_CROSSED, VERTICAL_GAVE_UP);
     }
     
     /**
@@ -99,7 +361,7 @@ public class StatisticsTracker {
      * @return the count
      */
     public int getHorizontalVehiclesWaiting() {
-        return horizontalVehiclesWaiting.get();
+        return (int) waiting(HORIZONTAL_STARTED, HORIZONTAL_CROSSED, HORIZONTAL_GAVE_UP);
     }
     
     /**
@@ -108,11 +370,7 @@ public class StatisticsTracker {
      * @return the average wait time, or 0 if no vehicles have crossed
      */
     public double getAverageVerticalWaitTime() {
-        int crossed = verticalVehiclesCrossed.get();
-        if (crossed == 0) {
-            return 0;
-        }
-        return (double) totalVerticalWaitTime.get() / crossed;
+        return averageWaitTime(true, false);
     }
     
     /**
@@ -121,11 +379,7 @@ public class StatisticsTracker {
      * @return the average wait time, or 0 if no vehicles have crossed
      */
     public double getAverageHorizontalWaitTime() {
-        int crossed = horizontalVehiclesCrossed.get();
-        if (crossed == 0) {
-            return 0;
-        }
-        return (double) totalHorizontalWaitTime.get() / crossed;
+        return averageWaitTime(false, true);
     }
     
     /**
@@ -134,26 +388,152 @@ public class StatisticsTracker {
      * @return the average wait time, or 0 if no vehicles have crossed
      */
     public double getOverallAverageWaitTime() {
-        int totalCrossed = getTotalVehiclesCrossed();
-        if (totalCrossed == 0) {
-            return 0;
-        }
-        long totalWait = totalVerticalWaitTime.get() + totalHorizontalWaitTime.get();
-        return (double) totalWait / totalCrossed;
+        return averageWaitTime(true, true);
+    }
+    
+    /**
+     * Gets the crossing throughput of both directions over a recent window.
+     * 
+     * @param windowMs the window length in milliseconds, up to 5 minutes
+     * @return vehicles crossed per second
+     * @throws IllegalArgumentException if the window is not positive or too long
+     */
+    public double getCrossingsPerSecond(long windowMs) {
+        return getVerticalCrossingsPerSecond(windowMs) + getHorizontalCrossingsPerSecond(windowMs);
+    }
+    
+    /**
+     * Gets the vertical crossing throughput over a recent window.
+     * 
+     * @param windowMs the window length in milliseconds, up to 5 minutes
+     * @return vertical vehicles crossed per second
+     * @throws IllegalArgumentException if the window is not positive or too long
+     */
+    public double getVerticalCrossingsPerSecond(long windowMs) {
+        return verticalCrossings.ratePerSecond(clock.getAsLong(), windowMs);
+    }
+    
+    /**
+     * Gets the horizontal crossing throughput over a recent window.
+     * 
+     * @param windowMs the window length in milliseconds, up to 5 minutes
+     * @return horizontal vehicles crossed per second
+     * @throws IllegalArgumentException if the window is not positive or too long
+     */
+    public double getHorizontalCrossingsPerSecond(long windowMs) {
+        return horizontalCrossings.ratePerSecond(clock.getAsLong(), windowMs);
+    }
+    
+    /**
+     * Gets the longest vertical queue sampled over a recent window.
+     * 
+     * @param windowMs the window length in milliseconds, up to 1 minute
+     * @return the maximum number of waiting vertical vehicles
+     * @throws IllegalArgumentException if the window is not positive or too long
+     */
+    public long getMaxVerticalQueueLength(long windowMs) {
+        return verticalQueueLength.max(clock.getAsLong(), windowMs);
+    }
+    
+    /**
+     * Gets the longest horizontal queue sampled over a recent window.
+     * 
+     * @param windowMs the window length in milliseconds, up to 1 minute
+     * @return the maximum number of waiting horizontal vehicles
+     * @throws IllegalArgumentException if the window is not positive or too long
+     */
+    public long getMaxHorizontalQueueLength(long windowMs) {
+        return horizontalQueueLength.max(clock.getAsLong(), windowMs);
+    }
+    
+    /**
+     * Copies the vertical queue length history, one value per 250 ms bucket,
+     * oldest first and the current bucket last.
+     * 
+     * @param target the array to fill, up to 240 buckets
+     * @return the number of buckets copied
+     */
+    public int copyVerticalQueueLengthHistory(long[] target) {
+        return verticalQueueLength.copyBuckets(clock.getAsLong(), target);
+    }
+    
+    /**
+     * Copies the horizontal queue length history, one value per 250 ms
+     * bucket, oldest first and the current bucket last.
+     * 
+     * @param target the array to fill, up to 240 buckets
+     * @return the number of buckets copied
+     */
+    public int copyHorizontalQueueLengthHistory(long[] target) {
+        return horizontalQueueLength.copyBuckets(clock.getAsLong(), target);
+    }
+    
+    /**
+     * Gets the wait time distribution of vertical vehicles.
+     * 
+     * @return the live vertical wait time histogram
+     */
+    public WaitTimeHistogram getVerticalWaitTimeHistogram() {
+        return verticalWaitTimeHistogram;
+    }
+    
+    /**
+     * Gets the wait time distribution of horizontal vehicles.
+     * 
+     * @return the live horizontal wait time histogram
+     */
+    public WaitTimeHistogram getHorizontalWaitTimeHistogram() {
+        return horizontalWaitTimeHistogram;
+    }
+    
+    /**
+     * Gets the latency distribution of one trip stage, both directions
+     * combined.
+     * 
+     * @param stage the stage
+     * @return the live stage histogram, in microseconds
+     */
+    public WaitTimeHistogram getStageLatencyHistogram(VehicleStage stage) {
+        return stageLatencyHistograms[stage.ordinal()];
+    }
+    
+    /**
+     * Gets the wait time distribution of all vehicles, merged from both
+     * directions.
+     * 
+     * @return a new histogram holding both directions
+     */
+    public WaitTimeHistogram getOverallWaitTimeHistogram() {
+        WaitTimeHistogram overall = new WaitTimeHistogram();
+        overall.merge(verticalWaitTimeHistogram);
+        overall.merge(horizontalWaitTimeHistogram);
+        return overall;
     }
     
     /**
      * Resets all statistics.
      */
     public void reset() {
-        verticalVehiclesCrossed.set(0);
-        horizontalVehiclesCrossed.set(0);
-        verticalVehiclesWaiting.set(0);
-        horizontalVehiclesWaiting.set(0);
-        totalVerticalWaitTime.set(0);
-        totalHorizontalWaitTime.set(0);
-        verticalVehicleCount.set(0);
-        horizontalVehicleCount.set(0);
+        for (int stripe = 0; stripe <= stripeMask; stripe++) {
+            int base = baseOf(stripe);
+            long sequence;
+            while (((sequence = stripes.get(base + SEQUENCE)) & 1) != 0
+                   || !stripes.compareAndSet(base + SEQUENCE, sequence, sequence + 1)) {
+                Thread.yield();
+            }
+            for (int slot = VERTICAL_STARTED; slot <= LAST_SLOT; slot++) {
+                stripes.lazySet(base + slot, 0);
+            }
+            stripes.set(base + SEQUENCE, sequence + 2);
+        }
+        verticalWaitTimeHistogram.reset();
+        horizontalWaitTimeHistogram.reset();
+        verticalCrossings.clear();
+        horizontalCrossings.clear();
+        verticalQueueLength.clear();
+        horizontalQueueLength.clear();
+        for (WaitTimeHistogram histogram : stageLatencyHistograms) {
+            histogram.reset();
+        }
     }
 }
-
@@ -0,0 +1,37 @@
+package carrefour;
+
+/**
+ * Helpers shared by the striped counters: how many stripes to use, and
+ * which stripe a thread writes to.
+ * 
+ * @author PC-DELL
+ */
+final class Stripes {
+    private Stripes() {
+    }
+    
+    /**
+     * Gets a power-of-two stripe count of about four per available
+     * processor.
+     * 
+     * @param maxStripes the upper bound, a power of two
+     * @return the stripe count
+     */
+    static int countFor(int maxStripes) {
+        int wanted = Math.min(maxStripes, 4 * Runtime.getRuntime().availableProcessors());
+        return Integer.highestOneBit(Math.max(wanted, 1) * 2 - 1);
+    }
+    
+    /**
+     * Spreads thread ids over the stripes, so threads created one after
+     * the other land on different stripes.
+     * 
+     * @param threadId the id of the writing thread
+     * @param stripeMask the stripe count minus one
+     * @return the stripe index
+     */
+    static int indexFor(long threadId, int stripeMask) {
+        long hash = threadId * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & stripeMask;
+    }
+}
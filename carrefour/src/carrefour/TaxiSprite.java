@@ -6,7 +6,7 @@ package carrefour;
  * @author PC-DELL
  */
 public class TaxiSprite extends VehicleSprite {
-    private static final String IMAGE_PATH = "resources/taxi.png";
+    static final String IMAGE_PATH = "resources/taxi.png";
     
     /**
      * Creates a new taxi sprite for vertical movement.
@@ -19,5 +19,20 @@ public class TaxiSprite extends VehicleSprite {
     public TaxiSprite(int x, int y, int width, int height) {
         super(IMAGE_PATH, x, y, width, height);
     }
+    
+    /**
+     * Creates a new taxi sprite for vertical movement. Callers that hold the
+     * result as a {@link VehicleSprite} do not need this class, and with it
+     * Swing, to be loaded when they are verified.
+     * 
+     * @param x initial x position
+     * @param y initial y position
+     * @param width sprite width
+     * @param height sprite height
+     * @return the sprite
+     */
+    static VehicleSprite create(int x, int y, int width, int height) {
+        return new TaxiSprite(x, y, width, height);
+    }
 }
 
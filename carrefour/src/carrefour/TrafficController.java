@@ -6,16 +6,14 @@ import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.File;
-import java.io.IOException;
-import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.imageio.ImageIO;
 import javax.swing.*;
 
 /**
  * Traffic controller panel that manages traffic lights and displays the intersection.
- * Alternates between two traffic light states every 2 seconds.
+ * The lights alternate between the two approaches, and the
+ * {@link SignalControlStrategy} decides how long each green lasts (2 seconds
+ * with the default fixed-time strategy).
  * 
  * @author PC-DELL
  */
@@ -30,14 +28,29 @@ public class TrafficController extends JPanel implements Runnable, ActionListene
     private static final int ROAD_HEIGHT = 350;
     private static final int INTERSECTION_X = 700;
     private static final int INTERSECTION_Y = 450;
+    private static final int LIGHT_IMAGE_WIDTH = 40;
+    private static final int LIGHT_IMAGE_HEIGHT = 70;
+    private static final int VEHICLE_TABLE_CAPACITY = 4096; // Fixed: the table is shared between threads
+    private static final float VEHICLE_ACCELERATION = 100f;
+    private static final float VEHICLE_DECELERATION = 100f;
+    private static final int LIGHT_INDICATOR_WIDTH = 30;
+    private static final int LIGHT_INDICATOR_HEIGHT = 20;
+    private static final int LIGHT1_X = 505;
+    private static final int LIGHT1_RED_Y = 646;
+    private static final int LIGHT1_GREEN_Y = 605;
+    private static final int LIGHT2_X = 855;
+    private static final int LIGHT2_RED_Y = 292;
+    private static final int LIGHT2_GREEN_Y = 255;
+    private static final String RENDER_FPS_PROPERTY = "carrefour.render.fps";
+    private static final int DEFAULT_RENDER_FPS = 60;
     
     private static final Logger LOGGER = Logger.getLogger(TrafficController.class.getName());
     
     private final Timer timer;
-    private final Semaphore trafficLight1;
-    private final Semaphore trafficLight2;
-    private final Semaphore lane2;
-    private final Semaphore lane1;
+    private final TrafficLightCycle lightCycle;
+    private final VehicleTable vehicleTable;
+    private final KinematicsStepper kinematicsStepper;
+    private final TripleBuffer<FrameSnapshot> frameBuffer;
     
     private JPanel redLight1;
     private JPanel greenLight1;
@@ -46,14 +59,19 @@ public class TrafficController extends JPanel implements Runnable, ActionListene
     
     private VehicleLanePanel verticalLane;
     private VehicleLanePanel horizontalLane;
+    private VehicleLanePanel.RenderMode renderMode;
+    private ActiveRenderCanvas activeRenderCanvas; // Only in ACTIVE render mode
     
     private Image greenLightImage;
     private Image redLightImage;
-    private int currentLightState = 1; // 1 = light1 green, 2 = light2 green
+    private Image verticalVehicleImage;
+    private Image horizontalVehicleImage;
     private StatisticsPanel statisticsPanel; // Reference to statistics panel for updates
+    private volatile VehiclePool vehiclePool; // Receives finished vehicles for reuse
+    private long frameNumber; // Frames published so far, EDT only
     
     /**
-     * Creates a new traffic controller.
+     * Creates a new fixed-time traffic controller.
      * 
      * @param trafficLight1 semaphore for traffic light 1
      * @param trafficLight2 semaphore for traffic light 2
@@ -62,10 +80,49 @@ public class TrafficController extends JPanel implements Runnable, ActionListene
      */
     public TrafficController(Semaphore trafficLight1, Semaphore trafficLight2, 
                             Semaphore lane2, Semaphore lane1) {
-        this.trafficLight1 = trafficLight1;
-        this.trafficLight2 = trafficLight2;
-        this.lane2 = lane2;
-        this.lane1 = lane1;
+        this(trafficLight1, trafficLight2, lane2, lane1, null);
+    }
+    
+    /**
+     * Creates a new traffic controller whose signal control strategy is
+     * chosen with the {@code carrefour.signal.*} system properties.
+     * 
+     * @param trafficLight1 semaphore for traffic light 1
+     * @param trafficLight2 semaphore for traffic light 2
+     * @param lane2 semaphore for lane 2
+     * @param lane1 semaphore for lane 1
+     * @param statisticsTracker source of the queue lengths for adaptive control
+     *                          (can be null, which forces fixed-time control)
+     */
+    public TrafficController(Semaphore trafficLight1, Semaphore trafficLight2,
+                            Semaphore lane2, Semaphore lane1, StatisticsTracker statisticsTracker) {
+        this(trafficLight1, trafficLight2, lane2, lane1, statisticsTracker, null);
+    }
+    
+    /**
+     * Creates a new traffic controller whose signal control strategy is
+     * chosen with the {@code carrefour.signal.*} system properties and whose
+     * lights admit vehicles in platoons when platoon admission is given.
+     * 
+     * @param trafficLight1 semaphore for traffic light 1
+     * @param trafficLight2 semaphore for traffic light 2
+     * @param lane2 semaphore for lane 2
+     * @param lane1 semaphore for lane 1
+     * @param statisticsTracker source of the queue lengths for adaptive control
+     *                          (can be null, which forces fixed-time control)
+     * @param platoonAdmission platoon admission settings, the same as the
+     *                         vehicles' (null to admit one vehicle at a time)
+     */
+    public TrafficController(Semaphore trafficLight1, Semaphore trafficLight2,
+                            Semaphore lane2, Semaphore lane1, StatisticsTracker statisticsTracker,
+                            PlatoonAdmission platoonAdmission) {
+        this.lightCycle = new TrafficLightCycle(trafficLight1, trafficLight2, lane1, lane2,
+                                                createStrategy(statisticsTracker), statisticsTracker,
+                                                platoonAdmission);
+        lightCycle.setSwitchListener(this::onLightsSwitched);
+        this.vehicleTable = new VehicleTable(VEHICLE_TABLE_CAPACITY, false);
+        this.kinematicsStepper = new KinematicsStepper(VEHICLE_ACCELERATION, VEHICLE_DECELERATION);
+        this.frameBuffer = new TripleBuffer<>(FrameSnapshot::new);
         
         this.timer = new Timer(TIMER_DELAY_MS, this);
         this.setLayout(null);
@@ -74,25 +131,55 @@ public class TrafficController extends JPanel implements Runnable, ActionListene
         loadImages();
     }
     
+    /**
+     * Creates the configured signal control strategy, falling back to fixed
+     * time when there is no tracker to read queues from.
+     */
+    private static SignalControlStrategy createStrategy(StatisticsTracker statisticsTracker) {
+        SignalControlStrategy strategy =
+            SignalControlStrategy.fromSystemProperties(TRAFFIC_LIGHT_CHANGE_INTERVAL_MS);
+        if (statisticsTracker == null && !(strategy instanceof FixedTimeSignalStrategy)) {
+            LOGGER.warning("No statistics tracker for " + strategy + ", using fixed-time control");
+            return new FixedTimeSignalStrategy(TRAFFIC_LIGHT_CHANGE_INTERVAL_MS);
+        }
+        return strategy;
+    }
+    
     /**
      * Initializes the GUI components.
      */
     private void initializeComponents() {
+        renderMode = VehicleLanePanel.renderModeFromSystemProperties();
+        boolean activeRendering = renderMode == VehicleLanePanel.RenderMode.ACTIVE;
+        
         // Create vertical lane panel
-        verticalLane = new VehicleLanePanel(true);
+        verticalLane = new VehicleLanePanel(true, renderMode);
         verticalLane.setBounds(VERTICAL_LANE_X, VERTICAL_LANE_Y, 90, 900);
         verticalLane.setBackground(Color.RED);
-        this.add(verticalLane);
         
         // Create horizontal lane panel
-        horizontalLane = new VehicleLanePanel(false);
+        horizontalLane = new VehicleLanePanel(false, renderMode);
         horizontalLane.setBounds(HORIZONTAL_LANE_X, HORIZONTAL_LANE_Y, 1400, 90);
         horizontalLane.setBackground(Color.GREEN);
-        this.add(horizontalLane);
         
         // Initialize traffic lights
         initializeTrafficLights();
         
+        if (activeRendering) {
+            // The canvas draws everything; the lanes only track their vehicles
+            activeRenderCanvas = new ActiveRenderCanvas(this,
+                Integer.getInteger(RENDER_FPS_PROPERTY, DEFAULT_RENDER_FPS));
+            activeRenderCanvas.setBounds(0, 0, 1400, 900);
+            this.add(activeRenderCanvas);
+        } else {
+            this.add(verticalLane);
+            this.add(horizontalLane);
+            this.add(redLight1);
+            this.add(greenLight1);
+            this.add(redLight2);
+            this.add(greenLight2);
+        }
+        
         // Start timer for repainting
         timer.start();
     }
@@ -104,63 +191,61 @@ public class TrafficController extends JPanel implements Runnable, ActionListene
         // Traffic light 1 (vertical direction)
         redLight1 = new JPanel();
         redLight1.setBackground(Color.GRAY);
-        redLight1.setBounds(505, 646, 30, 20);
-        this.add(redLight1);
+        redLight1.setBounds(LIGHT1_X, LIGHT1_RED_Y, LIGHT_INDICATOR_WIDTH, LIGHT_INDICATOR_HEIGHT);
         
         greenLight1 = new JPanel();
         greenLight1.setBackground(Color.GREEN);
-        greenLight1.setBounds(505, 605, 30, 20);
-        this.add(greenLight1);
+        greenLight1.setBounds(LIGHT1_X, LIGHT1_GREEN_Y, LIGHT_INDICATOR_WIDTH, LIGHT_INDICATOR_HEIGHT);
         
         // Traffic light 2 (horizontal direction)
         redLight2 = new JPanel();
         redLight2.setBackground(Color.RED);
-        redLight2.setBounds(855, 292, 30, 20);
-        this.add(redLight2);
+        redLight2.setBounds(LIGHT2_X, LIGHT2_RED_Y, LIGHT_INDICATOR_WIDTH, LIGHT_INDICATOR_HEIGHT);
         
         greenLight2 = new JPanel();
         greenLight2.setBackground(Color.GRAY);
-        greenLight2.setBounds(855, 255, 30, 20);
-        this.add(greenLight2);
+        greenLight2.setBounds(LIGHT2_X, LIGHT2_GREEN_Y, LIGHT_INDICATOR_WIDTH, LIGHT_INDICATOR_HEIGHT);
     }
     
     /**
-     * Loads traffic light images.
+     * Loads traffic light and vehicle images, pre-scaled to their drawing size.
      */
     private void loadImages() {
-        try {
-            File greenImageFile = new File("resources/traficverre.jpg");
-            File redImageFile = new File("resources/traficrouge.jpg");
-            
-            if (greenImageFile.exists()) {
-                greenLightImage = ImageIO.read(greenImageFile);
-            }
-            if (redImageFile.exists()) {
-                redLightImage = ImageIO.read(redImageFile);
-            }
-        } catch (IOException ex) {
-            LOGGER.log(Level.WARNING, "Could not load traffic light images", ex);
-        }
+        greenLightImage = SpriteImageCache.getImage("resources/traficverre.jpg",
+                                                    LIGHT_IMAGE_WIDTH, LIGHT_IMAGE_HEIGHT);
+        redLightImage = SpriteImageCache.getImage("resources/traficrouge.jpg",
+                                                  LIGHT_IMAGE_WIDTH, LIGHT_IMAGE_HEIGHT);
+        verticalVehicleImage = SpriteImageCache.getImage(TaxiSprite.IMAGE_PATH,
+            VerticalVehicle.VEHICLE_WIDTH, VerticalVehicle.VEHICLE_HEIGHT);
+        horizontalVehicleImage = SpriteImageCache.getImage(Taxi16Sprite.IMAGE_PATH,
+            HorizontalVehicle.VEHICLE_WIDTH, HorizontalVehicle.VEHICLE_HEIGHT);
     }
     
     /**
-     * Registers a vehicle with the appropriate lane panel.
+     * Registers a vehicle with the appropriate lane panel. May be called from
+     * any thread; the lane is updated on the event dispatch thread.
      * 
      * @param vehicle the vehicle to register
      * @param isVertical true if vertical lane, false if horizontal
      */
-    public void registerVehicle(VehicleSprite vehicle, boolean isVertical) {
-        if (isVertical) {
-            verticalLane.addVehicle(vehicle);
-        } else {
-            horizontalLane.addVehicle(vehicle);
-        }
+    public void registerVehicle(Vehicle vehicle, boolean isVertical) {
+        VehicleLanePanel lane = isVertical ? verticalLane : horizontalLane;
+        SwingUtilities.invokeLater(() -> lane.addVehicle(vehicle));
     }
     
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-        
+        paintIntersection(g);
+    }
+    
+    /**
+     * Draws the parts of the intersection that never change: roads, lane
+     * lines and traffic light images.
+     * 
+     * @param g the graphics context
+     */
+    void paintIntersection(Graphics g) {
         Graphics2D g2d = (Graphics2D) g;
         
         // Draw roads
@@ -179,61 +264,95 @@ public class TrafficController extends JPanel implements Runnable, ActionListene
         
         // Draw traffic light images
         if (greenLightImage != null) {
-            g2d.drawImage(greenLightImage, 500, 600, 40, 70, null);
+            g2d.drawImage(greenLightImage, 500, 600, null);
         }
         if (redLightImage != null) {
-            g2d.drawImage(redLightImage, 850, 250, 40, 70, null);
+            g2d.drawImage(redLightImage, 850, 250, null);
+        }
+    }
+    
+    /**
+     * Draws the red and green indicators of both traffic lights, matching
+     * the indicator panels.
+     * 
+     * @param g the graphics context
+     * @param lightState 1 for vertical green, 2 for horizontal green
+     */
+    void paintLightIndicators(Graphics g, int lightState) {
+        boolean verticalGreen = lightState == 1;
+        paintIndicator(g, LIGHT1_X, LIGHT1_RED_Y, verticalGreen ? Color.GRAY : Color.RED);
+        paintIndicator(g, LIGHT1_X, LIGHT1_GREEN_Y, verticalGreen ? Color.GREEN : Color.GRAY);
+        paintIndicator(g, LIGHT2_X, LIGHT2_RED_Y, verticalGreen ? Color.RED : Color.GRAY);
+        paintIndicator(g, LIGHT2_X, LIGHT2_GREEN_Y, verticalGreen ? Color.GRAY : Color.GREEN);
+    }
+    
+    /**
+     * Fills one traffic light indicator.
+     */
+    private void paintIndicator(Graphics g, int x, int y, Color color) {
+        g.setColor(color);
+        g.fillRect(x, y, LIGHT_INDICATOR_WIDTH, LIGHT_INDICATOR_HEIGHT);
+    }
+    
+    /**
+     * Draws every vehicle of a frame snapshot.
+     * 
+     * @param g the graphics context
+     * @param frame the frame to draw
+     */
+    void paintVehicles(Graphics g, FrameSnapshot frame) {
+        int count = frame.getVehicleCount();
+        for (int i = 0; i < count; i++) {
+            int along = (int) frame.getPosition(i);
+            if (frame.getLane(i) == VehicleTable.LANE_VERTICAL) {
+                g.drawImage(verticalVehicleImage, VERTICAL_LANE_X + VerticalVehicle.INITIAL_X,
+                            VERTICAL_LANE_Y + along, null);
+            } else {
+                g.drawImage(horizontalVehicleImage, HORIZONTAL_LANE_X + along,
+                            HORIZONTAL_LANE_Y + HorizontalVehicle.INITIAL_Y, null);
+            }
         }
     }
     
     @Override
     public void actionPerformed(ActionEvent e) {
+        // Drop finished vehicles before they cost another step and paint
+        verticalLane.retireFinishedVehicles(vehicleTable, vehiclePool);
+        horizontalLane.retireFinishedVehicles(vehicleTable, vehiclePool);
+        
+        // Fixed timestep: every tick advances the vehicles by one timer period
+        kinematicsStepper.step(vehicleTable, TIMER_DELAY_MS / 1000f);
+        publishFrame();
+        if (activeRenderCanvas != null) {
+            // The render thread picks up the new frame at its own rate
+            return;
+        }
+        verticalLane.syncPositions(vehicleTable);
+        horizontalLane.syncPositions(vehicleTable);
         repaint();
     }
     
+    /**
+     * Captures the vehicles and lights into the back buffer and hands it to
+     * the renderer.
+     */
+    private void publishFrame() {
+        FrameSnapshot frame = frameBuffer.getWriteBuffer();
+        frame.capture(vehicleTable, lightCycle.getCurrentLightState(), ++frameNumber, System.nanoTime());
+        frameBuffer.publish();
+    }
+    
     @Override
     public void run() {
-        while (!Thread.currentThread().isInterrupted()) {
-            try {
-                Thread.sleep(TRAFFIC_LIGHT_CHANGE_INTERVAL_MS);
-                switchTrafficLights();
-            } catch (InterruptedException ex) {
-                Thread.currentThread().interrupt();
-                LOGGER.log(Level.INFO, "Traffic controller thread interrupted");
-                break;
-            }
-        }
+        lightCycle.run();
     }
     
     /**
-     * Switches the traffic lights between the two states.
+     * Updates the views after the light cycle switched the lights.
      */
-    private void switchTrafficLights() {
-        if (currentLightState == 1) {
-            // Switch to light 2 (horizontal) green
-            trafficLight1.P();
-            trafficLight2.V();
-            currentLightState = 2;
-            
-            greenLight2.setBackground(Color.GREEN);
-            redLight2.setBackground(Color.GRAY);
-            greenLight1.setBackground(Color.GRAY);
-            redLight1.setBackground(Color.RED);
-            
-            LOGGER.info("Traffic light 2 (horizontal) is now GREEN");
-        } else {
-            // Switch to light 1 (vertical) green
-            trafficLight1.V();
-            trafficLight2.P();
-            currentLightState = 1;
-            
-            greenLight2.setBackground(Color.GRAY);
-            redLight2.setBackground(Color.RED);
-            greenLight1.setBackground(Color.GREEN);
-            redLight1.setBackground(Color.GRAY);
-            
-            LOGGER.info("Traffic light 1 (vertical) is now GREEN");
-        }
+    private void onLightsSwitched() {
+        // Indicator panels belong to the event dispatch thread
+        SwingUtilities.invokeLater(this::updateLightPanels);
         
         // Notify statistics panel of light change
         if (statisticsPanel != null) {
@@ -241,6 +360,17 @@ public class TrafficController extends JPanel implements Runnable, ActionListene
         }
     }
     
+    /**
+     * Colors the indicator panels for the current light state.
+     */
+    private void updateLightPanels() {
+        boolean verticalGreen = lightCycle.getCurrentLightState() == 1;
+        greenLight2.setBackground(verticalGreen ? Color.GRAY : Color.GREEN);
+        redLight2.setBackground(verticalGreen ? Color.RED : Color.GRAY);
+        greenLight1.setBackground(verticalGreen ? Color.GREEN : Color.GRAY);
+        redLight1.setBackground(verticalGreen ? Color.GRAY : Color.RED);
+    }
+    
     /**
      * Sets the statistics panel reference for light change notifications.
      * 
@@ -250,17 +380,65 @@ public class TrafficController extends JPanel implements Runnable, ActionListene
         this.statisticsPanel = statisticsPanel;
     }
     
+    /**
+     * Sets the pool that receives finished vehicles once they are retired.
+     * Without a pool, retired vehicles are simply dropped.
+     * 
+     * @param vehiclePool the vehicle pool
+     */
+    public void setVehiclePool(VehiclePool vehiclePool) {
+        this.vehiclePool = vehiclePool;
+    }
+    
     /**
      * Gets the current traffic light state.
      * 
      * @return 1 for vertical green, 2 for horizontal green
      */
     public int getCurrentLightState() {
-        return currentLightState;
+        return lightCycle.getCurrentLightState();
+    }
+    
+    /**
+     * Gets the triple buffer through which each simulation tick publishes a
+     * {@link FrameSnapshot}. It supports a single reader, which is the
+     * active render canvas when it exists.
+     * 
+     * @return the frame buffer
+     */
+    public TripleBuffer<FrameSnapshot> getFrameBuffer() {
+        return frameBuffer;
+    }
+    
+    /**
+     * Gets the canvas used in ACTIVE render mode.
+     * 
+     * @return the active render canvas, or null in the other render modes
+     */
+    public ActiveRenderCanvas getActiveRenderCanvas() {
+        return activeRenderCanvas;
+    }
+    
+    /**
+     * Gets the table holding the state of the registered vehicles.
+     * 
+     * @return the vehicle table
+     */
+    public VehicleTable getVehicleTable() {
+        return vehicleTable;
+    }
+    
+    /**
+     * Gets the cycle that switches the traffic lights.
+     * 
+     * @return the light cycle
+     */
+    public TrafficLightCycle getLightCycle() {
+        return lightCycle;
     }
     
     /**
-     * Gets the traffic light change interval in milliseconds.
+     * Gets the green time of fixed-time control in milliseconds.
      * 
      * @return the interval in milliseconds
      */
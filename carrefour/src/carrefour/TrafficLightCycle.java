@@ -0,0 +1,245 @@
+package carrefour;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Alternates the two traffic lights. Light 1 controls the vertical direction
+ * and starts green; light 2 controls the horizontal direction and starts
+ * red. A {@link SignalControlStrategy} decides when each green ends, from
+ * the queues reported by the {@link StatisticsTracker}. With
+ * {@link PlatoonAdmission} the cycle opens and closes the approaches'
+ * {@link PlatoonGate}s instead of passing the green permit.
+ * 
+ * <p>The cycle only touches the semaphores and gates, so it runs the same way behind
+ * the Swing {@link TrafficController} and in {@link HeadlessRunner}.
+ * 
+ * @author PC-DELL
+ */
+public class TrafficLightCycle implements Runnable {
+    private static final Logger LOGGER = Logger.getLogger(TrafficLightCycle.class.getName());
+    
+    private final Semaphore trafficLight1;
+    private final Semaphore trafficLight2;
+    private final Semaphore lane1;
+    private final Semaphore lane2;
+    private final SignalControlStrategy strategy;
+    private final StatisticsTracker statisticsTracker;
+    private final PlatoonAdmission platoonAdmission;
+    
+    private volatile int currentLightState = 1; // 1 = light1 green, 2 = light2 green
+    private long greenStartNanos; // Cycle thread only
+    private volatile long switchCount;
+    private volatile Runnable switchListener;
+    
+    /**
+     * Creates a new fixed-time light cycle. The semaphores must be in the
+     * initial state: light 1 with one permit, light 2 with none.
+     * 
+     * @param trafficLight1 semaphore for traffic light 1 (vertical)
+     * @param trafficLight2 semaphore for traffic light 2 (horizontal)
+     * @param lane1 semaphore for lane 1 (vertical), for queue reporting
+     * @param lane2 semaphore for lane 2 (horizontal), for queue reporting
+     * @param greenIntervalMs how long each light stays green, in milliseconds
+     * @throws IllegalArgumentException if greenIntervalMs is not positive
+     */
+    public TrafficLightCycle(Semaphore trafficLight1, Semaphore trafficLight2,
+                             Semaphore lane1, Semaphore lane2, long greenIntervalMs) {
+        this(trafficLight1, trafficLight2, lane1, lane2, new FixedTimeSignalStrategy(greenIntervalMs), null);
+    }
+    
+    /**
+     * Creates a new light cycle driven by a signal control strategy. The
+     * semaphores must be in the initial state: light 1 with one permit,
+     * light 2 with none.
+     * 
+     * @param trafficLight1 semaphore for traffic light 1 (vertical)
+     * @param trafficLight2 semaphore for traffic light 2 (horizontal)
+     * @param lane1 semaphore for lane 1 (vertical), for queue reporting
+     * @param lane2 semaphore for lane 2 (horizontal), for queue reporting
+     * @param strategy decides when each green ends
+     * @param statisticsTracker source of the queue lengths (can be null for fixed-time control)
+     * @throws IllegalArgumentException if a queue-actuated strategy has no tracker
+     */
+    public TrafficLightCycle(Semaphore trafficLight1, Semaphore trafficLight2,
+                             Semaphore lane1, Semaphore lane2,
+                             SignalControlStrategy strategy, StatisticsTracker statisticsTracker) {
+        this(trafficLight1, trafficLight2, lane1, lane2, strategy, statisticsTracker, null);
+    }
+    
+    /**
+     * Creates a new light cycle driven by a signal control strategy that
+     * admits vehicles in platoons when platoon admission is given. The
+     * semaphores must be in the initial state: light 1 with one permit,
+     * light 2 with none.
+     * 
+     * @param trafficLight1 semaphore for traffic light 1 (vertical)
+     * @param trafficLight2 semaphore for traffic light 2 (horizontal)
+     * @param lane1 semaphore for lane 1 (vertical), for queue reporting
+     * @param lane2 semaphore for lane 2 (horizontal), for queue reporting
+     * @param strategy decides when each green ends
+     * @param statisticsTracker source of the queue lengths (can be null for fixed-time control)
+     * @param platoonAdmission platoon admission settings (null to admit one vehicle at a time)
+     * @throws IllegalArgumentException if a queue-actuated strategy has no tracker
+     */
+    public TrafficLightCycle(Semaphore trafficLight1, Semaphore trafficLight2,
+                             Semaphore lane1, Semaphore lane2, SignalControlStrategy strategy,
+                             StatisticsTracker statisticsTracker, PlatoonAdmission platoonAdmission) {
+        if (statisticsTracker == null && !(strategy instanceof FixedTimeSignalStrategy)) {
+            throw new IllegalArgumentException("A queue-actuated strategy needs a statistics tracker");
+        }
+        this.trafficLight1 = trafficLight1;
+        this.trafficLight2 = trafficLight2;
+        this.lane1 = lane1;
+        this.lane2 = lane2;
+        this.strategy = strategy;
+        this.statisticsTracker = statisticsTracker;
+        this.platoonAdmission = platoonAdmission;
+    }
+    
+    @Override
+    public void run() {
+        greenStartNanos = System.nanoTime();
+        strategy.phaseStarted(currentLightState);
+        if (platoonAdmission != null) {
+            platoonAdmission.getVerticalGate().open();
+        }
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(strategy.getDecisionIntervalMs());
+                if (shouldSwitch()) {
+                    switchLights();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                LOGGER.log(Level.INFO, "Traffic light cycle interrupted");
+                break;
+            }
+        }
+    }
+    
+    /**
+     * Asks the strategy whether the current green should end.
+     */
+    private boolean shouldSwitch() {
+        long greenElapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - greenStartNanos);
+        int verticalQueue = 0;
+        int horizontalQueue = 0;
+        if (statisticsTracker != null) {
+            // Both queue lengths from the same moment
+            StatisticsSnapshot snapshot = statisticsTracker.snapshot();
+            verticalQueue = (int) snapshot.getVerticalVehiclesWaiting();
+            horizontalQueue = (int) snapshot.getHorizontalVehiclesWaiting();
+        }
+        boolean verticalGreen = currentLightState == 1;
+        return strategy.shouldSwitch(currentLightState, greenElapsedMs,
+                                     verticalGreen ? verticalQueue : horizontalQueue,
+                                     verticalGreen ? horizontalQueue : verticalQueue);
+    }
+    
+    /**
+     * Switches the traffic lights between the two states, starts the new
+     * green, then notifies the switch listener on the calling thread.
+     */
+    public void switchLights() {
+        PhaseSwitchEvent event = new PhaseSwitchEvent();
+        event.begin();
+        int fromState = currentLightState;
+        
+        if (platoonAdmission != null) {
+            // Stop admitting, let the platoon clear, then admit the other queue as a whole
+            gateOf(currentLightState).close();
+            awaitClearance();
+            currentLightState = 3 - currentLightState;
+            gateOf(currentLightState).open();
+        } else if (currentLightState == 1) {
+            // Switch to light 2 (horizontal) green
+            trafficLight1.P();
+            trafficLight2.V();
+            currentLightState = 2;
+        } else {
+            // Switch to light 1 (vertical) green
+            trafficLight1.V();
+            trafficLight2.P();
+            currentLightState = 1;
+        }
+        greenStartNanos = System.nanoTime();
+        strategy.phaseStarted(currentLightState);
+        switchCount++; // Single writer: the cycle thread
+        EventLog.log(EventLog.INFO, EventLog.LIGHT_SWITCHED, -1, currentLightState, fromState);
+        
+        event.end();
+        if (event.shouldCommit()) {
+            event.fromState = fromState;
+            event.toState = currentLightState;
+            event.verticalQueue = lane1.getQueueLength() + trafficLight1.getQueueLength();
+            event.horizontalQueue = lane2.getQueueLength() + trafficLight2.getQueueLength();
+            if (platoonAdmission != null) {
+                event.verticalQueue += platoonAdmission.getVerticalGate().getQueueLength();
+                event.horizontalQueue += platoonAdmission.getHorizontalGate().getQueueLength();
+            }
+            event.commit();
+        }
+        
+        Runnable listener = switchListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+    
+    /**
+     * Gets the platoon gate of the approach a light state makes green.
+     */
+    private PlatoonGate gateOf(int lightState) {
+        return lightState == 1 ? platoonAdmission.getVerticalGate() : platoonAdmission.getHorizontalGate();
+    }
+    
+    /**
+     * Holds both lights red for the clearance interval. An interrupt cuts the
+     * interval short and is left pending for the run loop.
+     */
+    private void awaitClearance() {
+        try {
+            Thread.sleep(platoonAdmission.getClearanceMs());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Sets the callback run after every switch, on the cycle thread.
+     * 
+     * @param switchListener the callback (can be null)
+     */
+    public void setSwitchListener(Runnable switchListener) {
+        this.switchListener = switchListener;
+    }
+    
+    /**
+     * Gets the current traffic light state.
+     * 
+     * @return 1 for vertical green, 2 for horizontal green
+     */
+    public int getCurrentLightState() {
+        return currentLightState;
+    }
+    
+    /**
+     * Gets the number of switches so far.
+     * 
+     * @return the switch count
+     */
+    public long getSwitchCount() {
+        return switchCount;
+    }
+    
+    /**
+     * Gets the strategy deciding when each green ends.
+     * 
+     * @return the signal control strategy
+     */
+    public SignalControlStrategy getStrategy() {
+        return strategy;
+    }
+}
@@ -0,0 +1,89 @@
+package carrefour;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Lock-free triple buffer handing the latest value from one writer thread to
+ * one reader thread.
+ * 
+ * <p>The writer fills its private back buffer and publishes it by swapping it
+ * with the shared middle buffer. The reader swaps its front buffer with the
+ * middle one whenever a newer value has been published. Neither side ever
+ * blocks or waits for the other, so both can run at their own rate: the
+ * reader always sees the most recent complete value and intermediate values
+ * it was too slow to pick up are simply overwritten.
+ * 
+ * <p>Buffers are reused. A buffer returned by {@link #getLatest()} stays
+ * untouched until the next call to getLatest, and the buffer returned by
+ * {@link #getWriteBuffer()} may hold any older value and must be fully
+ * overwritten before {@link #publish()}.
+ * 
+ * @param <T> the buffer type
+ * @author PC-DELL
+ */
+public class TripleBuffer<T> {
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4;
+    
+    private final Object[] buffers = new Object[3];
+    private final AtomicInteger middle; // index of the shared buffer, plus FRESH if unread
+    private int writeIndex; // owned by the writer
+    private int readIndex; // owned by the reader
+    
+    /**
+     * Creates a triple buffer whose three buffers come from the given factory.
+     * 
+     * @param factory creates the initial value of each buffer
+     */
+    public TripleBuffer(Supplier<? extends T> factory) {
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = factory.get();
+        }
+        writeIndex = 0;
+        middle = new AtomicInteger(1);
+        readIndex = 2;
+    }
+    
+    /**
+     * Gets the buffer the writer fills next. Writer thread only.
+     * 
+     * @return the back buffer
+     */
+    @SuppressWarnings("unchecked")
+    public T getWriteBuffer() {
+        return (T) buffers[writeIndex];
+    }
+    
+    /**
+     * Publishes the back buffer and takes over the previous middle buffer as
+     * the new back buffer. Writer thread only.
+     */
+    public void publish() {
+        writeIndex = middle.getAndSet(writeIndex | FRESH) & INDEX_MASK;
+    }
+    
+    /**
+     * Gets the most recently published buffer. Reader thread only.
+     * 
+     * @return the latest value, or the reader's current one if nothing newer
+     *         has been published
+     */
+    @SuppressWarnings("unchecked")
+    public T getLatest() {
+        if ((middle.get() & FRESH) != 0) {
+            readIndex = middle.getAndSet(readIndex) & INDEX_MASK;
+        }
+        return (T) buffers[readIndex];
+    }
+    
+    /**
+     * Checks whether a value has been published since the reader last took
+     * one.
+     * 
+     * @return true if getLatest would return a new buffer
+     */
+    public boolean hasFresh() {
+        return (middle.get() & FRESH) != 0;
+    }
+}
@@ -19,5 +19,20 @@ public interface Vehicle extends Runnable {
      * @return true if the vehicle has finished crossing
      */
     boolean isFinished();
+    
+    /**
+     * Gets the vehicle's row in the controller's vehicle table.
+     * 
+     * @return the row id, or -1 if the vehicle is not in a table
+     */
+    int getTableRow();
+    
+    /**
+     * Prepares a finished vehicle for a new trip so that it can be run again.
+     * Its table row must have been released by whoever retired it.
+     * 
+     * @throws IllegalStateException if the vehicle has not finished
+     */
+    void reset();
 }
 
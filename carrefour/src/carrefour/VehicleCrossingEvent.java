@@ -0,0 +1,63 @@
+package carrefour;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event emitted when a vehicle has crossed and released its
+ * permits, with the time it spent in each {@link VehicleStage}.
+ * 
+ * @author PC-DELL
+ */
+@Name("carrefour.VehicleCrossing")
+@Label("Vehicle Crossing")
+@Category({"Carrefour", "Traffic"})
+@Description("A vehicle crossed the intersection")
+class VehicleCrossingEvent extends jdk.jfr.Event {
+    @Label("Direction")
+    String direction;
+    
+    @Label("Lane Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    long laneWait;
+    
+    @Label("Light Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    long lightWait;
+    
+    @Label("Crossing")
+    @Timespan(Timespan.NANOSECONDS)
+    long crossing;
+    
+    @Label("Exit")
+    @Timespan(Timespan.NANOSECONDS)
+    long exit;
+    
+    /**
+     * Commits a crossing event from a vehicle's monotonic stage timestamps,
+     * if the event is enabled.
+     * 
+     * @param direction "vertical" or "horizontal"
+     * @param spawnNanos System.nanoTime when the vehicle was spawned
+     * @param laneAcquiredNanos System.nanoTime when the lane permit was acquired
+     * @param lightAcquiredNanos System.nanoTime when the green light permit was acquired
+     * @param crossingDoneNanos System.nanoTime when the vehicle had crossed
+     * @param exitNanos System.nanoTime when both permits had been released
+     */
+    static void emit(String direction, long spawnNanos, long laneAcquiredNanos,
+                     long lightAcquiredNanos, long crossingDoneNanos, long exitNanos) {
+        VehicleCrossingEvent event = new VehicleCrossingEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.direction = direction;
+        event.laneWait = laneAcquiredNanos - spawnNanos;
+        event.lightWait = lightAcquiredNanos - laneAcquiredNanos;
+        event.crossing = crossingDoneNanos - lightAcquiredNanos;
+        event.exit = exitNanos - crossingDoneNanos;
+        event.commit();
+    }
+}
@@ -1,56 +1,226 @@
 package carrefour;
 
+import java.awt.Graphics;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import javax.swing.JPanel;
 
 /**
  * Panel that displays vehicles in a lane (either vertical or horizontal).
  * 
+ * <p>In COMPONENTS mode every vehicle sprite is a child component positioned
+ * with setBounds. In BATCHED mode the panel has no children: positions are
+ * copied into plain arrays on each tick and all vehicles are drawn by a
+ * single paintComponent pass, which avoids per-vehicle layout, clipping and
+ * revalidation. In ACTIVE mode the panel only tracks and retires its
+ * vehicles; they are drawn by {@link ActiveRenderCanvas}.
+ * 
  * @author PC-DELL
  */
 public class VehicleLanePanel extends JPanel {
+    private static final String RENDER_MODE_PROPERTY = "carrefour.render.mode";
+    private static final int INITIAL_DRAW_CAPACITY = 64;
+    
+    /**
+     * How the vehicles of a lane are drawn.
+     */
+    public enum RenderMode {
+        COMPONENTS,
+        BATCHED,
+        ACTIVE
+    }
+    
     private final boolean isVertical;
-    private final List<VehicleSprite> vehicles;
+    private final RenderMode renderMode;
+    private final List<Vehicle> vehicles;
+    
+    // Draw list for BATCHED mode, rebuilt by syncPositions
+    private VehicleSprite[] drawSprites = new VehicleSprite[INITIAL_DRAW_CAPACITY];
+    private int[] drawX = new int[INITIAL_DRAW_CAPACITY];
+    private int[] drawY = new int[INITIAL_DRAW_CAPACITY];
+    private int drawCount;
     
     /**
-     * Creates a new vehicle lane panel.
+     * Creates a new vehicle lane panel that uses one component per vehicle.
      * 
      * @param isVertical true if this is a vertical lane, false if horizontal
      */
     public VehicleLanePanel(boolean isVertical) {
+        this(isVertical, RenderMode.COMPONENTS);
+    }
+    
+    /**
+     * Creates a new vehicle lane panel with the given render mode.
+     * 
+     * @param isVertical true if this is a vertical lane, false if horizontal
+     * @param renderMode how vehicles are drawn
+     */
+    public VehicleLanePanel(boolean isVertical, RenderMode renderMode) {
         this.isVertical = isVertical;
+        this.renderMode = renderMode;
         this.vehicles = new ArrayList<>();
         this.setLayout(null);
         this.setOpaque(false);
     }
     
+    /**
+     * Reads the render mode from the {@code carrefour.render.mode} system
+     * property ({@code components}, {@code batched} or {@code active}).
+     * 
+     * @return the configured render mode, COMPONENTS by default
+     */
+    public static RenderMode renderModeFromSystemProperties() {
+        String value = System.getProperty(RENDER_MODE_PROPERTY, RenderMode.COMPONENTS.name());
+        try {
+            return RenderMode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            return RenderMode.COMPONENTS;
+        }
+    }
+    
     /**
      * Adds a vehicle to this lane.
      * 
-     * @param vehicle the vehicle sprite to add
+     * @param vehicle the vehicle to add
      */
-    public void addVehicle(VehicleSprite vehicle) {
+    public void addVehicle(Vehicle vehicle) {
         if (vehicle != null) {
             vehicles.add(vehicle);
-            this.add(vehicle);
-            vehicle.setBounds(vehicle.getX(), vehicle.getY(), 
-                            vehicle.getWidth(), vehicle.getHeight());
+            if (renderMode == RenderMode.COMPONENTS) {
+                VehicleSprite sprite = vehicle.getSprite();
+                this.add(sprite);
+                sprite.setBounds(sprite.getX(), sprite.getY(), 
+                                sprite.getWidth(), sprite.getHeight());
+            }
         }
     }
     
     /**
      * Removes a vehicle from this lane.
      * 
-     * @param vehicle the vehicle sprite to remove
+     * @param vehicle the vehicle to remove
      */
-    public void removeVehicle(VehicleSprite vehicle) {
+    public void removeVehicle(Vehicle vehicle) {
         if (vehicle != null) {
             vehicles.remove(vehicle);
-            this.remove(vehicle);
+            if (renderMode == RenderMode.COMPONENTS) {
+                this.remove(vehicle.getSprite());
+            }
         }
     }
     
+    /**
+     * Detaches every finished vehicle from this lane, frees its table row and
+     * hands it to the pool for reuse. Must be called on the event dispatch
+     * thread.
+     * 
+     * @param vehicleTable the table holding vehicle rows
+     * @param vehiclePool the pool receiving retired vehicles (can be null)
+     */
+    public void retireFinishedVehicles(VehicleTable vehicleTable, VehiclePool vehiclePool) {
+        boolean removed = false;
+        for (Iterator<Vehicle> it = vehicles.iterator(); it.hasNext();) {
+            Vehicle vehicle = it.next();
+            if (!vehicle.isFinished()) {
+                continue;
+            }
+            it.remove();
+            if (renderMode == RenderMode.COMPONENTS) {
+                this.remove(vehicle.getSprite());
+            }
+            if (vehicle.getTableRow() >= 0) {
+                vehicleTable.release(vehicle.getTableRow());
+            }
+            if (vehiclePool != null) {
+                vehiclePool.recycle(vehicle, isVertical);
+            }
+            removed = true;
+        }
+        if (removed) {
+            repaint();
+        }
+    }
+    
+    /**
+     * Moves every sprite to its vehicle's position in the vehicle table.
+     * Must be called on the event dispatch thread.
+     * 
+     * @param vehicleTable the table holding vehicle positions
+     */
+    public void syncPositions(VehicleTable vehicleTable) {
+        if (renderMode == RenderMode.BATCHED) {
+            buildDrawList(vehicleTable);
+            return;
+        }
+        for (Vehicle vehicle : vehicles) {
+            int row = vehicle.getTableRow();
+            if (row < 0) {
+                continue;
+            }
+            VehicleSprite sprite = vehicle.getSprite();
+            int position = (int) vehicleTable.getPosition(row);
+            if (isVertical) {
+                sprite.setPosition(sprite.getX(), position);
+            } else {
+                sprite.setPosition(position, sprite.getY());
+            }
+        }
+    }
+    
+    /**
+     * Copies the vehicles' screen positions into the draw arrays.
+     */
+    private void buildDrawList(VehicleTable vehicleTable) {
+        int count = vehicles.size();
+        if (count > drawSprites.length) {
+            int capacity = Math.max(count, drawSprites.length * 2);
+            drawSprites = Arrays.copyOf(drawSprites, capacity);
+            drawX = Arrays.copyOf(drawX, capacity);
+            drawY = Arrays.copyOf(drawY, capacity);
+        }
+        for (int i = 0; i < count; i++) {
+            Vehicle vehicle = vehicles.get(i);
+            VehicleSprite sprite = vehicle.getSprite();
+            int row = vehicle.getTableRow();
+            int x = sprite.getX();
+            int y = sprite.getY();
+            if (row >= 0) {
+                int position = (int) vehicleTable.getPosition(row);
+                if (isVertical) {
+                    y = position;
+                } else {
+                    x = position;
+                }
+            }
+            drawSprites[i] = sprite;
+            drawX[i] = x;
+            drawY[i] = y;
+        }
+        // Do not keep retired sprites reachable
+        Arrays.fill(drawSprites, count, Math.max(count, drawCount), null);
+        drawCount = count;
+    }
+    
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        for (int i = 0; i < drawCount; i++) {
+            drawSprites[i].paintAt(g, drawX[i], drawY[i]);
+        }
+    }
+    
+    /**
+     * Gets the render mode of this lane.
+     * 
+     * @return the render mode
+     */
+    public RenderMode getRenderMode() {
+        return renderMode;
+    }
+    
     /**
      * Checks if this is a vertical lane.
      * 
@@ -0,0 +1,165 @@
+package carrefour;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Starts vehicles according to a selectable execution mode.
+ * 
+ * <p>The mode is read from the {@code carrefour.vehicle.mode} system property:
+ * <ul>
+ *   <li>{@code platform} (default) - one platform thread per vehicle</li>
+ *   <li>{@code virtual} - one virtual thread per vehicle (JDK 21+); falls back
+ *       to platform threads on older runtimes</li>
+ *   <li>{@code pooled} - a fixed pool of {@code carrefour.vehicle.poolSize}
+ *       platform threads shared by all vehicles</li>
+ * </ul>
+ * 
+ * <p>Vehicles spend most of their life parked in {@link Semaphore}, which
+ * parks through {@link java.util.concurrent.locks.LockSupport} rather than an
+ * object monitor, so a waiting virtual thread releases its carrier thread.
+ * 
+ * @author PC-DELL
+ */
+public class VehicleLauncher {
+    private static final String MODE_PROPERTY = "carrefour.vehicle.mode";
+    private static final String POOL_SIZE_PROPERTY = "carrefour.vehicle.poolSize";
+    private static final int DEFAULT_POOL_SIZE = 64;
+    private static final Logger LOGGER = Logger.getLogger(VehicleLauncher.class.getName());
+    
+    /**
+     * Execution modes for vehicle tasks.
+     */
+    public enum Mode {
+        PLATFORM,
+        VIRTUAL,
+        POOLED
+    }
+    
+    private final Mode mode;
+    private final ThreadFactory virtualThreadFactory;
+    private final ExecutorService pool;
+    
+    /**
+     * Creates a launcher for the given mode.
+     * 
+     * @param mode the requested execution mode
+     * @param poolSize number of pool threads, used only in POOLED mode
+     * @throws IllegalArgumentException if poolSize is not positive in POOLED mode
+     */
+    public VehicleLauncher(Mode mode, int poolSize) {
+        ThreadFactory factory = null;
+        if (mode == Mode.VIRTUAL) {
+            factory = createVirtualThreadFactory();
+            if (factory == null) {
+                LOGGER.warning("Virtual threads are not available on this runtime, using platform threads");
+                mode = Mode.PLATFORM;
+            }
+        }
+        if (mode == Mode.POOLED && poolSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        
+        this.mode = mode;
+        this.virtualThreadFactory = factory;
+        this.pool = mode == Mode.POOLED
+            ? Executors.newFixedThreadPool(poolSize, new PoolThreadFactory())
+            : null;
+    }
+    
+    /**
+     * Creates a launcher configured from the {@code carrefour.vehicle.*}
+     * system properties.
+     * 
+     * @return the configured launcher
+     */
+    public static VehicleLauncher fromSystemProperties() {
+        String value = System.getProperty(MODE_PROPERTY, Mode.PLATFORM.name());
+        Mode mode;
+        try {
+            mode = Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            LOGGER.log(Level.WARNING, "Unknown vehicle mode " + value + ", using platform threads");
+            mode = Mode.PLATFORM;
+        }
+        int poolSize = Integer.getInteger(POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE);
+        return new VehicleLauncher(mode, poolSize);
+    }
+    
+    /**
+     * Starts a vehicle.
+     * 
+     * @param vehicle the vehicle to run
+     * @param name the thread name used in the thread-per-vehicle modes
+     */
+    public void launch(Vehicle vehicle, String name) {
+        switch (mode) {
+            case POOLED:
+                pool.execute(vehicle);
+                break;
+            case VIRTUAL:
+                Thread virtualThread = virtualThreadFactory.newThread(vehicle);
+                virtualThread.setName(name);
+                virtualThread.start();
+                break;
+            default:
+                new Thread(vehicle, name).start();
+                break;
+        }
+    }
+    
+    /**
+     * Gets the effective execution mode.
+     * 
+     * @return the mode in use, after any fallback
+     */
+    public Mode getMode() {
+        return mode;
+    }
+    
+    /**
+     * Stops accepting vehicles in POOLED mode. Running vehicles complete.
+     */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+    
+    /**
+     * Looks up {@code Thread.ofVirtual().factory()} reflectively so the
+     * project still compiles and runs on runtimes without virtual threads.
+     * 
+     * @return the virtual thread factory, or null if unsupported
+     */
+    private static ThreadFactory createVirtualThreadFactory() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Method factory = ofVirtual.getReturnType().getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+    
+    /**
+     * Names pool threads and marks them as daemons.
+     */
+    private static final class PoolThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+        
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "VehiclePool-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package carrefour;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of finished vehicles, together with their sprites, for reuse by the
+ * spawner. Retired vehicles are returned from the event dispatch thread and
+ * taken back by the spawning thread, so both ends are thread-safe.
+ * 
+ * @author PC-DELL
+ */
+public class VehiclePool {
+    private final Semaphore lane1;
+    private final Semaphore trafficLight1;
+    private final Semaphore lane2;
+    private final Semaphore trafficLight2;
+    private final TrafficController trafficController;
+    private final StatisticsTracker statisticsTracker;
+    private final PlatoonAdmission platoonAdmission;
+    
+    private final ConcurrentLinkedQueue<Vehicle> verticalVehicles = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Vehicle> horizontalVehicles = new ConcurrentLinkedQueue<>();
+    private final AtomicLong createdCount = new AtomicLong();
+    
+    /**
+     * Creates an empty vehicle pool. New vehicles are created with the given
+     * semaphores when the pool has none to reuse.
+     * 
+     * @param lane1 semaphore for lane 1 (vertical)
+     * @param trafficLight1 semaphore for traffic light 1 (vertical)
+     * @param lane2 semaphore for lane 2 (horizontal)
+     * @param trafficLight2 semaphore for traffic light 2 (horizontal)
+     * @param trafficController the traffic controller
+     * @param statisticsTracker the statistics tracker (can be null)
+     */
+    public VehiclePool(Semaphore lane1, Semaphore trafficLight1,
+                       Semaphore lane2, Semaphore trafficLight2,
+                       TrafficController trafficController, StatisticsTracker statisticsTracker) {
+        this(lane1, trafficLight1, lane2, trafficLight2, trafficController, statisticsTracker, null);
+    }
+    
+    /**
+     * Creates an empty vehicle pool whose vehicles cross in platoons when
+     * platoon admission is given.
+     * 
+     * @param lane1 semaphore for lane 1 (vertical)
+     * @param trafficLight1 semaphore for traffic light 1 (vertical)
+     * @param lane2 semaphore for lane 2 (horizontal)
+     * @param trafficLight2 semaphore for traffic light 2 (horizontal)
+     * @param trafficController the traffic controller
+     * @param statisticsTracker the statistics tracker (can be null)
+     * @param platoonAdmission platoon admission settings (null to cross one at a time)
+     */
+    public VehiclePool(Semaphore lane1, Semaphore trafficLight1,
+                       Semaphore lane2, Semaphore trafficLight2,
+                       TrafficController trafficController, StatisticsTracker statisticsTracker,
+                       PlatoonAdmission platoonAdmission) {
+        this.lane1 = lane1;
+        this.trafficLight1 = trafficLight1;
+        this.lane2 = lane2;
+        this.trafficLight2 = trafficLight2;
+        this.trafficController = trafficController;
+        this.statisticsTracker = statisticsTracker;
+        this.platoonAdmission = platoonAdmission;
+    }
+    
+    /**
+     * Gets a vehicle ready for a new trip, reusing a retired one if possible.
+     * 
+     * @param isVertical true for a vertical vehicle, false for a horizontal one
+     * @return the vehicle
+     */
+    public Vehicle obtain(boolean isVertical) {
+        Vehicle vehicle = (isVertical ? verticalVehicles : horizontalVehicles).poll();
+        if (vehicle != null) {
+            vehicle.reset();
+            return vehicle;
+        }
+        createdCount.incrementAndGet();
+        if (isVertical) {
+            return new VerticalVehicle(lane1, trafficLight1, trafficController, statisticsTracker,
+                                       platoonAdmission);
+        }
+        return new HorizontalVehicle(lane2, trafficLight2, trafficController, statisticsTracker,
+                                     platoonAdmission);
+    }
+    
+    /**
+     * Returns a finished vehicle to the pool.
+     * 
+     * @param vehicle the retired vehicle
+     * @param isVertical true for a vertical vehicle, false for a horizontal one
+     */
+    public void recycle(Vehicle vehicle, boolean isVertical) {
+        (isVertical ? verticalVehicles : horizontalVehicles).add(vehicle);
+    }
+    
+    /**
+     * Gets the number of vehicles waiting to be reused.
+     * 
+     * @return the pooled vehicle count
+     */
+    public int size() {
+        return verticalVehicles.size() + horizontalVehicles.size();
+    }
+    
+    /**
+     * Gets the number of vehicles this pool has created, which is the peak
+     * number of vehicles alive at the same time when all of them come back.
+     * 
+     * @return the created vehicle count
+     */
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+}
@@ -1,12 +1,7 @@
 package carrefour;
 
 import java.awt.Graphics;
-import java.awt.Graphics2D;
 import java.awt.Image;
-import java.io.File;
-import java.io.IOException;
-import javax.imageio.ImageIO;
-import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 
 /**
@@ -42,19 +37,11 @@ public abstract class VehicleSprite extends JPanel {
     }
     
     /**
-     * Loads the vehicle image from file.
+     * Gets the vehicle image, already scaled to the sprite size, from the
+     * shared image cache.
      */
     private void loadImage() {
-        try {
-            File imgFile = new File(imagePath);
-            if (imgFile.exists()) {
-                vehicleImage = ImageIO.read(imgFile);
-            }
-        } catch (IOException ex) {
-            JOptionPane.showMessageDialog(null, 
-                "Could not load vehicle image: " + imagePath + "\n" + ex.getMessage(),
-                "Image Loading Error", JOptionPane.ERROR_MESSAGE);
-        }
+        vehicleImage = SpriteImageCache.getImage(imagePath, width, height);
     }
     
     /**
@@ -69,6 +56,20 @@ public abstract class VehicleSprite extends JPanel {
         this.setBounds(x, y, width, height);
     }
     
+    /**
+     * Moves the vehicle to an absolute position.
+     * 
+     * @param newX new x position
+     * @param newY new y position
+     */
+    public void setPosition(int newX, int newY) {
+        if (newX != x || newY != y) {
+            this.x = newX;
+            this.y = newY;
+            this.setBounds(x, y, width, height);
+        }
+    }
+    
     /**
      * Gets the current x position.
      * 
@@ -105,12 +106,25 @@ public abstract class VehicleSprite extends JPanel {
         return height;
     }
     
+    /**
+     * Draws the vehicle image at the given position of another component's
+     * graphics context, for batched rendering without a sprite component.
+     * 
+     * @param g the graphics context
+     * @param drawX x position in the target's coordinates
+     * @param drawY y position in the target's coordinates
+     */
+    public void paintAt(Graphics g, int drawX, int drawY) {
+        if (vehicleImage != null) {
+            g.drawImage(vehicleImage, drawX, drawY, null);
+        }
+    }
+    
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
         if (vehicleImage != null) {
-            Graphics2D g2d = (Graphics2D) g;
-            g2d.drawImage(vehicleImage, 0, 0, width, height, null);
+            g.drawImage(vehicleImage, 0, 0, null);
         }
     }
 }
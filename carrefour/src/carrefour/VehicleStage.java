@@ -0,0 +1,18 @@
+package carrefour;
+
+/**
+ * Stages of a vehicle's trip through the intersection, each measured from
+ * the end of the previous one.
+ * 
+ * @author PC-DELL
+ */
+public enum VehicleStage {
+    /** From spawn until the lane permit is acquired. */
+    LANE_WAIT,
+    /** From the lane permit until the green light permit is acquired. */
+    LIGHT_WAIT,
+    /** From the green light permit until the vehicle has crossed. */
+    CROSSING,
+    /** From the end of the crossing until both permits are released. */
+    EXIT
+}
@@ -0,0 +1,443 @@
+package carrefour;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Structure-of-arrays store for vehicle state.
+ * 
+ * <p>Each vehicle is a row id into parallel primitive columns (position,
+ * speed, speed limit, stop position, lane, state and timestamps) instead of an object of its own, so
+ * stepping or drawing every vehicle is a linear scan over a few arrays.
+ * Rows of departed vehicles are recycled through a free list, so a steady
+ * population allocates nothing after warm-up.
+ * 
+ * <p>Row allocation and release are synchronized. The columns belong to the
+ * thread that steps the table (see {@link #applyPostedStates}): only it
+ * reads and writes them after allocation. The threads driving the vehicles
+ * change a vehicle's lifecycle state through {@link #setState}, a volatile
+ * write to a per-row slot that the stepping thread copies into the state
+ * column at its next step, clearing the stop position of a vehicle that
+ * started crossing. Growing replaces the columns, which would lose writes
+ * made through the old ones, so a table shared between threads must be
+ * created with a fixed capacity. A full fixed table hands out NO_ROW
+ * instead of growing.
+ * 
+ * @author PC-DELL
+ */
+public class VehicleTable {
+    /** Row is unused. */
+    public static final int STATE_FREE = 0;
+    /** Vehicle is queued for its lane. */
+    public static final int STATE_WAITING_LANE = 1;
+    /** Vehicle holds its lane and waits for green. */
+    public static final int STATE_WAITING_LIGHT = 2;
+    /** Vehicle holds the green permit and is crossing. */
+    public static final int STATE_CROSSING = 3;
+    /** Vehicle has crossed and released its permits. */
+    public static final int STATE_FINISHED = 4;
+    
+    /** Lane id for vertical vehicles. */
+    public static final int LANE_VERTICAL = 0;
+    /** Lane id for horizontal vehicles. */
+    public static final int LANE_HORIZONTAL = 1;
+    
+    /** Row id returned by allocate when a fixed-capacity table is full. */
+    public static final int NO_ROW = -1;
+    
+    /** Stop position of a vehicle that is free to drive on. */
+    public static final float NO_STOP = Float.MAX_VALUE;
+    
+    private static final int DEFAULT_CAPACITY = 256;
+    
+    private float[] position;
+    private float[] speed;
+    private float[] maxSpeed;
+    private float[] stopPosition;
+    private int[] lane;
+    private int[] state; // As last applied by the stepping thread
+    private AtomicIntegerArray postedState; // As last set by the vehicle's thread
+    private long[] spawnTime;
+    private long[] laneTime;
+    private long[] lightTime;
+    
+    private final boolean growable;
+    private int[] freeRows;
+    private int freeCount;
+    private volatile int highWaterMark; // Written after the new row, so readers see it initialised
+    private int activeCount;
+    
+    /**
+     * Creates a growable table with the default initial capacity.
+     */
+    public VehicleTable() {
+        this(DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * Creates a growable table with the given initial capacity.
+     * 
+     * @param capacity initial number of rows (must be > 0)
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public VehicleTable(int capacity) {
+        this(capacity, true);
+    }
+    
+    /**
+     * Creates a table with the given capacity.
+     * 
+     * @param capacity initial number of rows (must be > 0)
+     * @param growable true to double the columns when the table is full,
+     *                 false for a fixed capacity that can be shared between threads
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public VehicleTable(int capacity, boolean growable) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        position = new float[capacity];
+        speed = new float[capacity];
+        maxSpeed = new float[capacity];
+        stopPosition = new float[capacity];
+        lane = new int[capacity];
+        state = new int[capacity];
+        postedState = new AtomicIntegerArray(capacity);
+        spawnTime = new long[capacity];
+        laneTime = new long[capacity];
+        lightTime = new long[capacity];
+        freeRows = new int[capacity];
+        this.growable = growable;
+    }
+    
+    /**
+     * Allocates a row for a new, stationary vehicle in the WAITING_LANE state.
+     * May be called from any thread; the stepping thread picks the row up at
+     * its next {@link #applyPostedStates}.
+     * 
+     * @param laneId the lane id
+     * @param initialPosition initial position along the lane
+     * @param stopAt position along the lane where the vehicle must stop, or NO_STOP
+     * @param speedLimit maximum speed along the lane
+     * @param time spawn timestamp
+     * @return the row id of the vehicle, or NO_ROW if a fixed-capacity table is full
+     */
+    public synchronized int allocate(int laneId, float initialPosition, float stopAt,
+                                     float speedLimit, long time) {
+        int id;
+        if (freeCount > 0) {
+            id = freeRows[--freeCount];
+        } else {
+            if (highWaterMark == state.length) {
+                if (!growable) {
+                    return NO_ROW;
+                }
+                grow();
+            }
+            id = highWaterMark;
+        }
+        position[id] = initialPosition;
+        speed[id] = 0;
+        maxSpeed[id] = speedLimit;
+        stopPosition[id] = stopAt;
+        lane[id] = laneId;
+        spawnTime[id] = time;
+        laneTime[id] = 0;
+        lightTime[id] = 0;
+        postedState.set(id, STATE_WAITING_LANE); // Publishes the row to the stepping thread
+        if (id == highWaterMark) {
+            highWaterMark = id + 1;
+        }
+        activeCount++;
+        return id;
+    }
+    
+    /**
+     * Releases a row so it can be reused by a later vehicle. Call it on the
+     * stepping thread, once the vehicle has finished.
+     * 
+     * @param id the row id
+     * @throws IllegalStateException if the row is already free
+     */
+    public synchronized void release(int id) {
+        if (postedState.get(id) == STATE_FREE) {
+            throw new IllegalStateException("Vehicle row " + id + " is already free");
+        }
+        state[id] = STATE_FREE;
+        postedState.set(id, STATE_FREE);
+        freeRows[freeCount++] = id;
+        activeCount--;
+    }
+    
+    /**
+     * Doubles the capacity of every column.
+     */
+    private void grow() {
+        int capacity = state.length * 2;
+        position = Arrays.copyOf(position, capacity);
+        speed = Arrays.copyOf(speed, capacity);
+        maxSpeed = Arrays.copyOf(maxSpeed, capacity);
+        stopPosition = Arrays.copyOf(stopPosition, capacity);
+        lane = Arrays.copyOf(lane, capacity);
+        state = Arrays.copyOf(state, capacity);
+        AtomicIntegerArray grownPostedState = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < postedState.length(); i++) {
+            grownPostedState.set(i, postedState.get(i));
+        }
+        postedState = grownPostedState;
+        spawnTime = Arrays.copyOf(spawnTime, capacity);
+        laneTime = Arrays.copyOf(laneTime, capacity);
+        lightTime = Arrays.copyOf(lightTime, capacity);
+        freeRows = Arrays.copyOf(freeRows, capacity);
+    }
+    
+    /**
+     * Copies the states set since the last call into the state column, and
+     * clears the stop position of every vehicle that has started crossing.
+     * Rows allocated since the last call join the columns here. Must be
+     * called on the thread that steps the table, before reading the columns.
+     */
+    public void applyPostedStates() {
+        int rows = highWaterMark;
+        for (int id = 0; id < rows; id++) {
+            int posted = postedState.get(id);
+            if (posted != state[id]) {
+                if (posted >= STATE_CROSSING) {
+                    stopPosition[id] = NO_STOP;
+                }
+                state[id] = posted;
+            }
+        }
+    }
+    
+    /**
+     * Gets the number of rows that have ever been used. Iterating ids
+     * {@code 0..getHighWaterMark()-1} and skipping free rows visits every
+     * vehicle.
+     * 
+     * @return the high water mark
+     */
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+    
+    /**
+     * Gets the number of vehicles currently stored.
+     * 
+     * @return the active vehicle count
+     */
+    public synchronized int getActiveCount() {
+        return activeCount;
+    }
+    
+    /**
+     * Gets a vehicle's position along the lane, in pixels.
+     * 
+     * @param id the row id
+     * @return the position along the lane
+     */
+    public float getPosition(int id) {
+        return position[id];
+    }
+    
+    /**
+     * Sets a vehicle's position along the lane, in pixels.
+     * 
+     * @param id the row id
+     * @param value the new value
+     */
+    public void setPosition(int id, float value) {
+        position[id] = value;
+    }
+    
+    /**
+     * Gets a vehicle's speed along the lane, in pixels per second.
+     * 
+     * @param id the row id
+     * @return the speed along the lane
+     */
+    public float getSpeed(int id) {
+        return speed[id];
+    }
+    
+    /**
+     * Sets a vehicle's speed along the lane, in pixels per second.
+     * 
+     * @param id the row id
+     * @param value the new value
+     */
+    public void setSpeed(int id, float value) {
+        speed[id] = value;
+    }
+    
+    /**
+     * Gets a vehicle's speed limit, in pixels per second.
+     * 
+     * @param id the row id
+     * @return the speed limit
+     */
+    public float getMaxSpeed(int id) {
+        return maxSpeed[id];
+    }
+    
+    /**
+     * Gets the position along the lane where a vehicle must stop.
+     * 
+     * @param id the row id
+     * @return the stop position, or NO_STOP
+     */
+    public float getStopPosition(int id) {
+        return stopPosition[id];
+    }
+    
+    /**
+     * Sets the position along the lane where a vehicle must stop. Use
+     * NO_STOP to let it drive on.
+     * 
+     * @param id the row id
+     * @param value the new stop position
+     */
+    public void setStopPosition(int id, float value) {
+        stopPosition[id] = value;
+    }
+    
+    /**
+     * Gets a vehicle's lane id.
+     * 
+     * @param id the row id
+     * @return the lane id
+     */
+    public int getLane(int id) {
+        return lane[id];
+    }
+    
+    /**
+     * Gets the lifecycle state last set for a vehicle. May be called from any
+     * thread.
+     * 
+     * @param id the row id
+     * @return the lifecycle state
+     */
+    public int getState(int id) {
+        return postedState.get(id);
+    }
+    
+    /**
+     * Sets a vehicle's lifecycle state. May be called from the thread driving
+     * the vehicle: the state column and the stop position follow at the next
+     * {@link #applyPostedStates}.
+     * 
+     * @param id the row id
+     * @param value the new value
+     */
+    public void setState(int id, int value) {
+        postedState.set(id, value);
+    }
+    
+    /**
+     * Gets a vehicle's spawn timestamp.
+     * 
+     * @param id the row id
+     * @return the spawn timestamp
+     */
+    public long getSpawnTime(int id) {
+        return spawnTime[id];
+    }
+    
+    /**
+     * Gets a vehicle's timestamp at which the lane was acquired.
+     * 
+     * @param id the row id
+     * @return the timestamp at which the lane was acquired
+     */
+    public long getLaneTime(int id) {
+        return laneTime[id];
+    }
+    
+    /**
+     * Sets a vehicle's timestamp at which the lane was acquired.
+     * 
+     * @param id the row id
+     * @param value the new value
+     */
+    public void setLaneTime(int id, long value) {
+        laneTime[id] = value;
+    }
+    
+    /**
+     * Gets a vehicle's timestamp at which the green light was acquired.
+     * 
+     * @param id the row id
+     * @return the timestamp at which the green light was acquired
+     */
+    public long getLightTime(int id) {
+        return lightTime[id];
+    }
+    
+    /**
+     * Sets a vehicle's timestamp at which the green light was acquired.
+     * 
+     * @param id the row id
+     * @param value the new value
+     */
+    public void setLightTime(int id, long value) {
+        lightTime[id] = value;
+    }
+    
+    /**
+     * Gets the position column for bulk processing. The array of a growable
+     * table may be replaced when it grows, so do not keep it across
+     * allocations.
+     * 
+     * @return the position column
+     */
+    float[] positionColumn() {
+        return position;
+    }
+    
+    /**
+     * Gets the speed column for bulk processing.
+     * 
+     * @return the speed column
+     */
+    float[] speedColumn() {
+        return speed;
+    }
+    
+    /**
+     * Gets the speed limit column for bulk processing.
+     * 
+     * @return the speed limit column
+     */
+    float[] maxSpeedColumn() {
+        return maxSpeed;
+    }
+    
+    /**
+     * Gets the stop position column for bulk processing.
+     * 
+     * @return the stop position column
+     */
+    float[] stopPositionColumn() {
+        return stopPosition;
+    }
+    
+    /**
+     * Gets the lane id column for bulk processing.
+     * 
+     * @return the lane id column
+     */
+    int[] laneColumn() {
+        return lane;
+    }
+    
+    /**
+     * Gets the lifecycle state column for bulk processing, as of the last
+     * {@link #applyPostedStates}.
+     * 
+     * @return the lifecycle state column
+     */
+    int[] stateColumn() {
+        return state;
+    }
+}
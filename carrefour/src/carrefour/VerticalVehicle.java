@@ -1,5 +1,7 @@
 package carrefour;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -9,24 +11,30 @@ import java.util.logging.Logger;
  * @author PC-DELL
  */
 public class VerticalVehicle implements Vehicle {
-    private static final int INITIAL_X = 10;
-    private static final int INITIAL_Y = 0;
-    private static final int VEHICLE_WIDTH = 40;
-    private static final int VEHICLE_HEIGHT = 70;
-    private static final int MOVEMENT_SPEED = 5;
+    static final int INITIAL_X = 10;
+    static final int INITIAL_Y = 0;
+    static final int VEHICLE_WIDTH = 40;
+    static final int VEHICLE_HEIGHT = 70;
+    private static final int MOVEMENT_SPEED = 5; // pixels per 100 ms animation tick
     private static final int INTERSECTION_Y = 250;
+    private static final long CROSSING_TIME_MS = 100;
+    // Longest wait for the lane and the light before the vehicle leaves; 0 waits forever
+    private static final long PATIENCE_MS = Long.getLong("carrefour.vehicle.patienceMs", 0);
+    private static final AtomicInteger NEXT_VEHICLE_ID = new AtomicInteger();
     private static final Logger LOGGER = Logger.getLogger(VerticalVehicle.class.getName());
     
     private final Semaphore laneSemaphore;
     private final Semaphore trafficLightSemaphore;
     private final TrafficController trafficController;
-    private final VehicleSprite sprite;
+    private volatile VehicleSprite sprite; // Created on first use, so headless runs load no Swing classes
     private final StatisticsTracker statisticsTracker;
+    private final VehicleTable vehicleTable;
+    private final PlatoonAdmission platoonAdmission;
     
-    private int y;
-    private int speed;
-    private boolean finished;
-    private long waitStartTime;
+    private int tableRow;
+    private int vehicleId; // New for every trip, unlike the table row, which is reused
+    private volatile boolean finished;
+    private long spawnNanos; // Monotonic, immune to wall-clock adjustments
     
     /**
      * Creates a new vertical vehicle.
@@ -38,16 +46,49 @@ public class VerticalVehicle implements Vehicle {
      */
     public VerticalVehicle(Semaphore laneSemaphore, Semaphore trafficLightSemaphore,
                           TrafficController trafficController, StatisticsTracker statisticsTracker) {
+        this(laneSemaphore, trafficLightSemaphore, trafficController, statisticsTracker, null);
+    }
+    
+    /**
+     * Creates a new vertical vehicle that crosses in platoons when platoon
+     * admission is given.
+     * 
+     * @param laneSemaphore semaphore for the lane
+     * @param trafficLightSemaphore semaphore for the traffic light
+     * @param trafficController the traffic controller
+     * @param statisticsTracker the statistics tracker (can be null)
+     * @param platoonAdmission platoon admission settings (null to cross one at a time)
+     */
+    public VerticalVehicle(Semaphore laneSemaphore, Semaphore trafficLightSemaphore,
+                          TrafficController trafficController, StatisticsTracker statisticsTracker,
+                          PlatoonAdmission platoonAdmission) {
         this.laneSemaphore = laneSemaphore;
         this.trafficLightSemaphore = trafficLightSemaphore;
         this.trafficController = trafficController;
         this.statisticsTracker = statisticsTracker;
-        this.y = INITIAL_Y;
-        this.speed = MOVEMENT_SPEED;
-        this.finished = false;
-        this.waitStartTime = System.currentTimeMillis();
+        this.platoonAdmission = platoonAdmission;
         
-        this.sprite = new TaxiSprite(INITIAL_X, INITIAL_Y, VEHICLE_WIDTH, VEHICLE_HEIGHT);
+        // Position and speed live in the controller's vehicle table
+        this.vehicleTable = trafficController != null ? trafficController.getVehicleTable() : null;
+        
+        startTrip();
+    }
+    
+    /**
+     * Puts the vehicle at the start of its lane and registers it as waiting.
+     */
+    private void startTrip() {
+        this.finished = false;
+        this.vehicleId = NEXT_VEHICLE_ID.incrementAndGet();
+        this.spawnNanos = System.nanoTime();
+        this.tableRow = vehicleTable != null
+            ? vehicleTable.allocate(VehicleTable.LANE_VERTICAL, INITIAL_Y, INTERSECTION_Y,
+                                    MOVEMENT_SPEED * 10f, System.currentTimeMillis())
+            : VehicleTable.NO_ROW;
+        VehicleSprite current = sprite;
+        if (current != null) {
+            current.setPosition(INITIAL_X, INITIAL_Y);
+        }
         
         if (statisticsTracker != null) {
             statisticsTracker.verticalVehicleStarted();
@@ -56,7 +97,17 @@ public class VerticalVehicle implements Vehicle {
     
     @Override
     public VehicleSprite getSprite() {
-        return sprite;
+        VehicleSprite current = sprite;
+        if (current == null) {
+            synchronized (this) {
+                current = sprite;
+                if (current == null) {
+                    current = TaxiSprite.create(INITIAL_X, INITIAL_Y, VEHICLE_WIDTH, VEHICLE_HEIGHT);
+                    sprite = current;
+                }
+            }
+        }
+        return current;
     }
     
     @Override
@@ -64,59 +115,154 @@ public class VerticalVehicle implements Vehicle {
         return finished;
     }
     
+    @Override
+    public int getTableRow() {
+        return tableRow;
+    }
+    
+    @Override
+    public void reset() {
+        if (!finished) {
+            throw new IllegalStateException("Vehicle is still on its trip");
+        }
+        startTrip();
+    }
+    
     @Override
     public void run() {
+        boolean holdsLane = false;
+        boolean holdsLight = false;
         try {
-            // Wait for lane access
-            laneSemaphore.P();
-            
-            // Wait for green light
-            trafficLightSemaphore.P();
+            long giveUpNanos = spawnNanos + TimeUnit.MILLISECONDS.toNanos(PATIENCE_MS);
+            long laneAcquiredNanos;
+            if (platoonAdmission != null) {
+                // Queue at the stop line; the light cycle admits the whole queue when it turns green
+                laneAcquiredNanos = System.nanoTime();
+                updateState(VehicleTable.STATE_WAITING_LIGHT);
+                PlatoonGate gate = platoonAdmission.getVerticalGate();
+                if (PATIENCE_MS <= 0) {
+                    gate.enter();
+                } else if (!gate.tryEnter(giveUpNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    giveUp();
+                    return;
+                }
+            } else {
+                // Wait for lane access
+                if (!acquire(laneSemaphore, giveUpNanos)) {
+                    giveUp();
+                    return;
+                }
+                holdsLane = true;
+                laneAcquiredNanos = System.nanoTime();
+                updateState(VehicleTable.STATE_WAITING_LIGHT);
+                
+                // Wait for green light; the lane permit is released in finally if the vehicle gives up
+                if (!acquire(trafficLightSemaphore, giveUpNanos)) {
+                    giveUp();
+                    return;
+                }
+                holdsLight = true;
+            }
+            long lightAcquiredNanos = System.nanoTime();
             
             // Calculate wait time
-            long waitTime = System.currentTimeMillis() - waitStartTime;
+            long waitTime = TimeUnit.NANOSECONDS.toMillis(lightAcquiredNanos - spawnNanos);
             
-            // Enter intersection - slow down
-            speed = -MOVEMENT_SPEED;
-            LOGGER.info("Vertical vehicle entering intersection");
+            // Enter intersection - the stepper releases the vehicle from the stop line
+            updateState(VehicleTable.STATE_CROSSING);
+            EventLog.log(EventLog.FINE, EventLog.VEHICLE_ENTERING, vehicleId,
+                         VehicleTable.LANE_VERTICAL, 0);
             
             // Simulate crossing (in real implementation, this would be animated)
-            Thread.sleep(100);
+            Thread.sleep(CROSSING_TIME_MS);
+            long crossingDoneNanos = System.nanoTime();
             
-            // Exit intersection - release semaphores
-            trafficLightSemaphore.V();
-            laneSemaphore.V();
+            // Exit intersection - release the semaphores still held
+            if (holdsLight) {
+                trafficLightSemaphore.V();
+                holdsLight = false;
+            }
+            if (holdsLane) {
+                laneSemaphore.V();
+                holdsLane = false;
+            }
+            long exitNanos = System.nanoTime();
+            VehicleCrossingEvent.emit("vertical", spawnNanos, laneAcquiredNanos, lightAcquiredNanos,
+                                      crossingDoneNanos, exitNanos);
             
             // Record statistics
             if (statisticsTracker != null) {
                 statisticsTracker.verticalVehicleCrossed(waitTime);
+                statisticsTracker.recordStageLatencies(spawnNanos, laneAcquiredNanos, lightAcquiredNanos,
+                                                       crossingDoneNanos, exitNanos);
             }
             
-            finished = true;
-            LOGGER.info("Vertical vehicle completed crossing in " + waitTime + "ms");
+            // Log before finishing: a finished vehicle may be recycled with a new id
+            EventLog.log(EventLog.INFO, EventLog.VEHICLE_CROSSED, vehicleId,
+                         VehicleTable.LANE_VERTICAL, waitTime);
             
         } catch (InterruptedException ex) {
             Thread.currentThread().interrupt();
             LOGGER.log(Level.WARNING, "Vertical vehicle thread interrupted", ex);
-            // Release semaphores on interruption
-            if (laneSemaphore.getCount() == 0) {
-                laneSemaphore.V();
-            }
-            if (trafficLightSemaphore.getCount() == 0) {
+        } finally {
+            // Release only the semaphores this vehicle still holds
+            if (holdsLight) {
                 trafficLightSemaphore.V();
             }
+            if (holdsLane) {
+                laneSemaphore.V();
+            }
+            // Also when interrupted: an unfinished vehicle is never retired, so its row would leak
+            updateState(VehicleTable.STATE_FINISHED);
+            finished = true;
         }
     }
     
     /**
-     * Updates the vehicle's position (called from animation timer).
+     * Takes a permit, waiting at most until giveUpNanos when the vehicle has
+     * a patience limit.
+     */
+    private static boolean acquire(Semaphore semaphore, long giveUpNanos) throws InterruptedException {
+        if (PATIENCE_MS <= 0) {
+            semaphore.acquire();
+            return true;
+        }
+        return semaphore.tryP(giveUpNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Records that the vehicle ran out of patience and leaves without
+     * crossing. The permits it holds are released by run.
+     */
+    private void giveUp() {
+        if (statisticsTracker != null) {
+            statisticsTracker.verticalVehicleGaveUp();
+        }
+        EventLog.log(EventLog.INFO, EventLog.VEHICLE_GAVE_UP, vehicleId,
+                     VehicleTable.LANE_VERTICAL, PATIENCE_MS);
+    }
+    
+    /**
+     * Records the vehicle's lifecycle state in the vehicle table.
+     * 
+     * @param state the new state
+     */
+    private void updateState(int state) {
+        if (tableRow != VehicleTable.NO_ROW) {
+            vehicleTable.setState(tableRow, state);
+        }
+    }
+    
+    /**
+     * Moves the vehicle along its lane, on top of the movement applied by
+     * the kinematics stage. Must be called on the thread that steps the
+     * vehicle table.
      * 
      * @param deltaY change in y position
      */
     public void updatePosition(int deltaY) {
-        if (!finished) {
-            y += deltaY;
-            sprite.updatePosition(0, deltaY);
+        if (!finished && tableRow != VehicleTable.NO_ROW) {
+            vehicleTable.setPosition(tableRow, vehicleTable.getPosition(tableRow) + deltaY);
         }
     }
 }
@@ -0,0 +1,314 @@
+package carrefour;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free, fixed-size histogram of wait times with log-linear buckets.
+ * Values have no fixed unit; the statistics tracker records wait times in
+ * milliseconds and stage latencies in microseconds.
+ * 
+ * <p>Values below 32 get a bucket each. Above that, every power of two is
+ * split into 32 equal buckets, so any recorded value is reported within about
+ * 3% of its true value while the whole {@code long} range fits in fewer than
+ * 2000 counters. Recording is a few atomic increments: it never locks and
+ * never allocates.
+ * 
+ * <p>The counters are striped like those of {@link StatisticsTracker}: each
+ * thread records into the bucket counts, count, sum and maximum of one
+ * stripe, picked from its thread id, and readers combine the stripes. Threads
+ * recording the same value therefore do not all increment the same counter.
+ * 
+ * <p>{@link #reset()} swaps in a fresh set of counters, so readers never see
+ * a half-cleared histogram. A value recorded concurrently with a reset may
+ * land in either set.
+ * 
+ * @author PC-DELL
+ */
+public class WaitTimeHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_SHIFT = 62 - SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT * (MAX_SHIFT + 2);
+    
+    // Slots of one stripe: the totals, then the bucket counts from FIRST_BUCKET
+    private static final int TOTAL_COUNT = 0;
+    private static final int SUM = 1;
+    private static final int MAX = 2;
+    private static final int FIRST_BUCKET = 16; // Keeps the totals off the low buckets' cache lines
+    private static final int STRIPE_STRIDE = FIRST_BUCKET + BUCKET_COUNT;
+    private static final int MAX_STRIPES = 16;
+    private static final int STRIPE_COUNT = Stripes.countFor(MAX_STRIPES);
+    
+    private final AtomicReference<Buckets> current = new AtomicReference<>(new Buckets());
+    
+    /**
+     * One generation of counters, replaced as a whole on reset.
+     */
+    private static final class Buckets {
+        // One extra stride in front keeps stripe 0 off the array header
+        final AtomicLongArray cells = new AtomicLongArray((STRIPE_COUNT + 1) * STRIPE_STRIDE);
+        
+        /**
+         * Gets the first slot of a stripe.
+         */
+        static int baseOf(int stripe) {
+            return (stripe + 1) * STRIPE_STRIDE;
+        }
+        
+        /**
+         * Sums one slot over all stripes.
+         */
+        long sum(int slot) {
+            long total = 0;
+            for (int stripe = 0; stripe < STRIPE_COUNT; stripe++) {
+                total += cells.get(baseOf(stripe) + slot);
+            }
+            return total;
+        }
+        
+        long count(int bucket) {
+            return sum(FIRST_BUCKET + bucket);
+        }
+        
+        long totalCount() {
+            return sum(TOTAL_COUNT);
+        }
+        
+        long sum() {
+            return sum(SUM);
+        }
+        
+        long max() {
+            long max = 0;
+            for (int stripe = 0; stripe < STRIPE_COUNT; stripe++) {
+                max = Math.max(max, cells.get(baseOf(stripe) + MAX));
+            }
+            return max;
+        }
+        
+        void recordMax(int base, long value) {
+            long seen;
+            while (value > (seen = cells.get(base + MAX)) && !cells.compareAndSet(base + MAX, seen, value)) {
+                // Lost a race with a thread sharing the stripe; retry against it
+            }
+        }
+    }
+    
+    /**
+     * Records one value. Negative values are recorded as 0.
+     * 
+     * @param value the value
+     */
+    public void record(long value) {
+        long clamped = Math.max(value, 0);
+        Buckets buckets = current.get();
+        int base = Buckets.baseOf(Stripes.indexFor(Thread.currentThread().getId(), STRIPE_COUNT - 1));
+        buckets.cells.incrementAndGet(base + FIRST_BUCKET + bucketIndex(clamped));
+        buckets.cells.incrementAndGet(base + TOTAL_COUNT);
+        buckets.cells.addAndGet(base + SUM, clamped);
+        buckets.recordMax(base, clamped);
+    }
+    
+    /**
+     * Adds every value recorded in another histogram to this one.
+     * 
+     * @param other the histogram to merge in
+     */
+    public void merge(WaitTimeHistogram other) {
+        Buckets source = other.current.get();
+        Buckets target = current.get();
+        int base = Buckets.baseOf(0);
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = source.count(i);
+            if (count != 0) {
+                target.cells.addAndGet(base + FIRST_BUCKET + i, count);
+            }
+        }
+        target.cells.addAndGet(base + TOTAL_COUNT, source.totalCount());
+        target.cells.addAndGet(base + SUM, source.sum());
+        target.recordMax(base, source.max());
+    }
+    
+    /**
+     * Discards every recorded value.
+     */
+    public void reset() {
+        current.set(new Buckets());
+    }
+    
+    /**
+     * Gets the number of recorded values.
+     * 
+     * @return the value count
+     */
+    public long getCount() {
+        return current.get().totalCount();
+    }
+    
+    /**
+     * Gets the largest recorded value.
+     * 
+     * @return the maximum, or 0 if nothing was recorded
+     */
+    public long getMax() {
+        return current.get().max();
+    }
+    
+    /**
+     * Gets the sum of the recorded values.
+     * 
+     * @return the sum, or 0 if nothing was recorded
+     */
+    public long getSum() {
+        return current.get().sum();
+    }
+    
+    /**
+     * Gets the mean of the recorded values.
+     * 
+     * @return the mean, or 0 if nothing was recorded
+     */
+    public double getMean() {
+        Buckets buckets = current.get();
+        long count = buckets.totalCount();
+        return count == 0 ? 0 : (double) buckets.sum() / count;
+    }
+    
+    /**
+     * Gets the value below which the given percentage of recorded values
+     * fall, as the upper bound of the bucket holding that value.
+     * 
+     * @param percentile the percentile, from 0 to 100
+     * @return the value at the percentile, or 0 if nothing was recorded
+     * @throws IllegalArgumentException if percentile is outside 0..100
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        Buckets buckets = current.get();
+        
+        // Count from the buckets themselves so the rank matches what we scan
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += buckets.count(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long max = buckets.max();
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.count(i);
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+    
+    /**
+     * Gets several percentiles in a single pass over the buckets, without
+     * allocating.
+     * 
+     * @param percentiles the percentiles, in ascending order, each from 0 to 100
+     * @param values receives the value at each percentile; at least as long
+     *        as percentiles
+     * @throws IllegalArgumentException if the percentiles are out of range or
+     *         not in ascending order, or values is too short
+     */
+    public void getValuesAtPercentiles(double[] percentiles, long[] values) {
+        if (values.length < percentiles.length) {
+            throw new IllegalArgumentException("Value array is shorter than the percentile array");
+        }
+        double previous = 0;
+        for (double percentile : percentiles) {
+            if (percentile < previous || percentile > 100) {
+                throw new IllegalArgumentException("Percentiles must be ascending and between 0 and 100");
+            }
+            previous = percentile;
+        }
+        Buckets buckets = current.get();
+        
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += buckets.count(i);
+        }
+        long max = buckets.max();
+        int next = 0;
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT && next < percentiles.length && total > 0; i++) {
+            seen += buckets.count(i);
+            while (next < percentiles.length
+                   && seen >= Math.max(1, (long) Math.ceil(percentiles[next] / 100 * total))) {
+                values[next++] = Math.min(bucketUpperBound(i), max);
+            }
+        }
+        while (next < percentiles.length) {
+            values[next++] = total == 0 ? 0 : max;
+        }
+    }
+    
+    /**
+     * Gets the median.
+     * 
+     * @return the 50th percentile
+     */
+    public long getP50() {
+        return getValueAtPercentile(50);
+    }
+    
+    /**
+     * Gets the 90th percentile.
+     * 
+     * @return the 90th percentile
+     */
+    public long getP90() {
+        return getValueAtPercentile(90);
+    }
+    
+    /**
+     * Gets the 99th percentile.
+     * 
+     * @return the 99th percentile
+     */
+    public long getP99() {
+        return getValueAtPercentile(99);
+    }
+    
+    /**
+     * Gets the 99.9th percentile.
+     * 
+     * @return the 99.9th percentile
+     */
+    public long getP999() {
+        return getValueAtPercentile(99.9);
+    }
+    
+    /**
+     * Maps a non-negative value to its bucket.
+     */
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKET_COUNT - 1);
+        return SUB_BUCKET_COUNT * (shift + 1) + subBucket;
+    }
+    
+    /**
+     * Gets the largest value that maps to a bucket.
+     */
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long subBucket = index % SUB_BUCKET_COUNT;
+        long lowerBound = (SUB_BUCKET_COUNT + subBucket) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+}